@@ -0,0 +1,20 @@
+package annotations;
+
+/**
+ * Defines how a relation is loaded together with its owner.
+ */
+public enum FetchType {
+    /**
+     * The relation is loaded right after its owners with a separate, batched query.
+     */
+    EAGER,
+    /**
+     * The relation is loaded in the same query as its owner using a {@code LEFT JOIN}.
+     * Only supported by {@link ManyToOne}.
+     */
+    JOIN,
+    /**
+     * The relation is loaded on first access. Only supported by {@link OneToMany}.
+     */
+    LAZY
+}
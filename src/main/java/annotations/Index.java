@@ -0,0 +1,25 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Secondary index created by {@code ORMManager.prepareRepositoryFor}. On a field it indexes
+ * the column of the field; on an entity class it indexes the fields listed in
+ * {@link #columns()}, in that order.
+ */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(Indexes.class)
+public @interface Index {
+    /** Name of the index, derived from the table and column names when empty. */
+    String name() default "";
+
+    /** Field names of the indexed columns; ignored on fields. */
+    String[] columns() default {};
+
+    boolean unique() default false;
+}
@@ -9,4 +9,6 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface OneToMany {
     String mappedBy() default "";
-}
\ No newline at end of file
+
+    FetchType fetch() default FetchType.EAGER;
+}
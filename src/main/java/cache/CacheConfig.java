@@ -0,0 +1,36 @@
+package cache;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of the {@link SecondLevelCache} region of one entity class.
+ */
+public final class CacheConfig {
+    private final int maxEntries;
+    private final Duration timeToLive;
+
+    /**
+     * @param maxEntries maximum number of entities kept in the region; the least recently
+     *                   used entity is evicted when it is exceeded
+     * @param timeToLive time after which a cached entity is considered stale
+     */
+    public CacheConfig(int maxEntries, Duration timeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Cache time to live must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLive = Objects.requireNonNull(timeToLive);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+}
@@ -0,0 +1,136 @@
+package cache;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache region of one entity class: a size bounded LRU map of entity states with a time
+ * to live, plus the list of all ids of the class as returned by the last full read.
+ * States are copied on the way in and out, including their mutable values, so sessions
+ * never share them.
+ */
+class CacheRegion {
+    private final long timeToLiveNanos;
+    private final Map<Long, Entry<Object[]>> states;
+    private Entry<List<Long>> allIds;
+    /** Incremented by every eviction, so that states and ids read before it are not cached. */
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    CacheRegion(CacheConfig config) {
+        this.timeToLiveNanos = config.getTimeToLive().toNanos();
+        var maxEntries = config.getMaxEntries();
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<Object[]>> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized Object[] getState(Long id) {
+        var entry = states.get(id);
+        if (entry != null && entry.isExpired()) {
+            states.remove(id);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.value);
+    }
+
+    /**
+     * Caches the state unless the region has been evicted from since the given generation.
+     */
+    synchronized void putState(Long id, Object[] state, long readGeneration) {
+        if (readGeneration == generation) {
+            states.put(id, new Entry<>(copy(state), System.nanoTime() + timeToLiveNanos));
+        }
+    }
+
+    synchronized void evict(Long id) {
+        states.remove(id);
+        generation++;
+    }
+
+    synchronized List<Long> getAllIds() {
+        if (allIds != null && allIds.isExpired()) {
+            allIds = null;
+            evictions.increment();
+        }
+        if (allIds == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return allIds.value;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the ids unless the region has been evicted from since the given generation.
+     */
+    synchronized void putAllIds(List<Long> ids, long readGeneration) {
+        if (readGeneration == generation) {
+            allIds = new Entry<>(List.copyOf(ids), System.nanoTime() + timeToLiveNanos);
+        }
+    }
+
+    synchronized void invalidateAllIds() {
+        allIds = null;
+        generation++;
+    }
+
+    synchronized void clear() {
+        states.clear();
+        allIds = null;
+        generation++;
+    }
+
+    synchronized CacheStatistics statistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), states.size());
+    }
+
+    private static Object[] copy(Object[] state) {
+        var copy = state.clone();
+        for (var i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof byte[]) {
+                copy[i] = ((byte[]) copy[i]).clone();
+            } else if (copy[i] instanceof Date) {
+                copy[i] = ((Date) copy[i]).clone();
+            }
+        }
+        return copy;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cache;
+
+import java.util.Objects;
+
+/**
+ * Identifies an entity by its class and id.
+ */
+public final class EntityKey {
+    private final Class<?> entityClass;
+    private final Long id;
+
+    public EntityKey(Class<?> entityClass, Long id) {
+        this.entityClass = Objects.requireNonNull(entityClass);
+        this.id = Objects.requireNonNull(id);
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EntityKey)) {
+            return false;
+        }
+        var that = (EntityKey) o;
+        return entityClass == that.entityClass && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * entityClass.hashCode() + id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entityClass.getSimpleName() + "#" + id;
+    }
+}
@@ -0,0 +1,71 @@
+package cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * First-level cache of a session. It maps {@link EntityKey}s to the instances loaded in
+ * the session, so that every row is hydrated at most once and the same instance is
+ * returned for repeated lookups and reused when relations are stitched together.
+ * <p>
+ * The context also remembers which instances already had their relations loaded and the
+ * column values they had when they were loaded, used for dirty checking.
+ * It is not thread-safe.
+ */
+public class PersistenceContext {
+    private final Map<EntityKey, Object> entities = new HashMap<>();
+    private final Set<Object> entitiesWithRelations = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Object, Object[]> snapshots = new IdentityHashMap<>();
+
+    public Object get(Class<?> entityClass, Long id) {
+        return entities.get(new EntityKey(entityClass, id));
+    }
+
+    public void put(Class<?> entityClass, Long id, Object entity) {
+        entities.put(new EntityKey(entityClass, id), entity);
+    }
+
+    /**
+     * Removes the instance cached for the given class and id, if any.
+     */
+    public void evict(Class<?> entityClass, Long id) {
+        var entity = entities.remove(new EntityKey(entityClass, id));
+        if (entity != null) {
+            entitiesWithRelations.remove(entity);
+            snapshots.remove(entity);
+        }
+    }
+
+    public boolean hasRelationsLoaded(Object entity) {
+        return entitiesWithRelations.contains(entity);
+    }
+
+    public void markRelationsLoaded(Object entity) {
+        entitiesWithRelations.add(entity);
+    }
+
+    /**
+     * Returns the column values the instance had when it was loaded or last written,
+     * or {@code null} if the instance is not managed by this context.
+     */
+    public Object[] getSnapshot(Object entity) {
+        return snapshots.get(entity);
+    }
+
+    public void putSnapshot(Object entity, Object[] snapshot) {
+        snapshots.put(entity, snapshot);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public void clear() {
+        entities.clear();
+        entitiesWithRelations.clear();
+        snapshots.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of entity states shared by the {@link client.ORMManager}s it is
+ * attached to. Only entity classes configured with {@link #configure(Class, CacheConfig)}
+ * are cached, each in its own LRU region bounded by size and time to live.
+ * <p>
+ * The cache stores the column values of an entity rather than the instance, so every
+ * session hydrates its own instances. Writes made through an attached manager evict the
+ * written entity and the cached list of all ids of its class. Writes made by other means
+ * are only picked up when the entries expire. The cache is thread-safe.
+ */
+public class SecondLevelCache {
+    private static final SecondLevelCache SHARED = new SecondLevelCache();
+
+    private final Map<Class<?>, CacheRegion> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cache instance shared by the whole process.
+     */
+    public static SecondLevelCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Enables caching for the entity class. Reconfiguring a class drops its cached entries.
+     */
+    public void configure(Class<?> entityClass, CacheConfig config) {
+        regions.put(entityClass, new CacheRegion(config));
+    }
+
+    public boolean isCached(Class<?> entityClass) {
+        return regions.containsKey(entityClass);
+    }
+
+    /**
+     * Returns a copy of the cached column values of the entity, or {@code null} on a miss.
+     */
+    public Object[] getState(Class<?> entityClass, Long id) {
+        var region = regions.get(entityClass);
+        return region == null ? null : region.getState(id);
+    }
+
+    /**
+     * Caches a copy of the column values of the entity, unless an entity of the class has
+     * been evicted since {@link #getGeneration(Class) generation} was read; the values may
+     * then predate a concurrent write.
+     */
+    public void putState(Class<?> entityClass, Long id, Object[] state, long generation) {
+        var region = regions.get(entityClass);
+        if (region != null) {
+            region.putState(id, state, generation);
+        }
+    }
+
+    /**
+     * Returns the ids of all entities of the class as of the last full read, or
+     * {@code null} if they are not cached.
+     */
+    public List<Long> getAllIds(Class<?> entityClass) {
+        var region = regions.get(entityClass);
+        return region == null ? null : region.getAllIds();
+    }
+
+    /**
+     * Returns the eviction generation of the class, to be read before the states passed to
+     * {@link #putState(Class, Long, Object[], long)} or the ids passed to
+     * {@link #putAllIds(Class, List, long)} are selected.
+     */
+    public long getGeneration(Class<?> entityClass) {
+        var region = regions.get(entityClass);
+        return region == null ? 0 : region.generation();
+    }
+
+    /**
+     * Caches the ids of all entities of the class, unless an entity of the class has been
+     * evicted since {@link #getGeneration(Class) generation} was read; the ids may then miss
+     * a concurrent insert or still contain a deleted entity.
+     */
+    public void putAllIds(Class<?> entityClass, List<Long> ids, long generation) {
+        var region = regions.get(entityClass);
+        if (region != null) {
+            region.putAllIds(ids, generation);
+        }
+    }
+
+    /**
+     * Evicts the cached state of the entity and the cached list of all ids of its class.
+     */
+    public void evict(Class<?> entityClass, Long id) {
+        var region = regions.get(entityClass);
+        if (region != null) {
+            if (id != null) {
+                region.evict(id);
+            }
+            region.invalidateAllIds();
+        }
+    }
+
+    public void clear() {
+        regions.values().forEach(CacheRegion::clear);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the class, or {@code null} if the
+     * class is not cached.
+     */
+    public CacheStatistics getStatistics(Class<?> entityClass) {
+        var region = regions.get(entityClass);
+        return region == null ? null : region.statistics();
+    }
+}
@@ -0,0 +1,132 @@
+package client;
+
+import exceptions.ORMException;
+import lombok.extern.slf4j.Slf4j;
+import pool.PoolConfig;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of a thread-safe {@link ORMManager}. Every operation runs on the
+ * executor in a fresh session and completes the returned {@link CompletableFuture}, so
+ * independent reads can be fanned out and take about as long as the slowest of them.
+ * <p>
+ * At most as many operations as the connection pool has connections run at once. Callers
+ * submitting more operations block until one of the running operations completes, instead
+ * of piling up tasks that would only wait for a connection.
+ * <p>
+ * By default the operations run on virtual threads when the JDK provides them (JDK 21+)
+ * and on a cached pool of daemon threads otherwise.
+ */
+@Slf4j
+public class AsyncORMManager implements AutoCloseable {
+    private final ORMManager ormManager;
+    private final Executor executor;
+    /** Executor created by this facade, shut down by {@link #close()}. */
+    private final ExecutorService ownedExecutor;
+    private final Semaphore permits;
+
+    public AsyncORMManager(ORMManager ormManager) {
+        this(ormManager, defaultExecutor(), ormManager.getMaxConcurrency(PoolConfig.DEFAULT_MAX_SIZE), true);
+    }
+
+    /**
+     * @param executor       executor running the operations
+     * @param maxConcurrency maximum number of operations submitted to the executor at once
+     */
+    public AsyncORMManager(ORMManager ormManager, Executor executor, int maxConcurrency) {
+        this(ormManager, executor, maxConcurrency, false);
+    }
+
+    private AsyncORMManager(ORMManager ormManager, Executor executor, int maxConcurrency, boolean ownsExecutor) {
+        if (!ormManager.isThreadSafe()) {
+            throw new IllegalArgumentException("ORMManager must be created with a DataSource to be used asynchronously.");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Maximum concurrency must be positive.");
+        }
+        this.ormManager = ormManager;
+        this.executor = Objects.requireNonNull(executor);
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    public <T> CompletableFuture<T> saveAsync(T entity) {
+        return submit(() -> {
+            ormManager.save(entity);
+            return entity;
+        });
+    }
+
+    public <T> CompletableFuture<T> getByIdAsync(Class<T> clazz, Long id) {
+        return submit(() -> ormManager.getById(clazz, id));
+    }
+
+    public <T> CompletableFuture<List<T>> getAllAsync(Class<T> clazz) {
+        return submit(() -> ormManager.getAll(clazz));
+    }
+
+    public <T> CompletableFuture<Void> deleteAsync(T entity) {
+        return submit(() -> {
+            ormManager.delete(entity);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(
+                    new ORMException("Interrupted while waiting to submit an operation.", e));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return operation.get();
+                } finally {
+                    ormManager.closeSession();
+                    permits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Shuts down the default executor. An executor given to the constructor is left running.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService defaultExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available, asynchronous operations use platform threads.");
+            var threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                var thread = new Thread(task, "orm-async-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
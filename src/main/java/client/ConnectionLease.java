@@ -0,0 +1,106 @@
+package client;
+
+import exceptions.ORMException;
+import jdbc.StatementCache;
+import pool.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Connection used by one {@link ORMManager} operation together with the statement cache
+ * for that connection. Nested operations share the lease of the outermost one; the
+ * connection is given back when the outermost operation closes its lease.
+ * <p>
+ * Connections of a {@link pool.ConnectionPool} keep their statement cache between borrows.
+ * Other connections get a cache that is closed together with the lease.
+ */
+final class ConnectionLease implements AutoCloseable {
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final boolean pinned;
+    private final boolean ownsStatementCache;
+    private final Runnable onRelease;
+    private int references;
+
+    private ConnectionLease(
+            Connection connection,
+            StatementCache statementCache,
+            boolean pinned,
+            boolean ownsStatementCache,
+            Runnable onRelease) {
+        this.connection = connection;
+        this.statementCache = statementCache;
+        this.pinned = pinned;
+        this.ownsStatementCache = ownsStatementCache;
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * A lease of a connection that stays open for the whole life of the manager.
+     */
+    static ConnectionLease pinned(Connection connection) {
+        return new ConnectionLease(connection, new StatementCache(connection), true, true, () -> { });
+    }
+
+    /**
+     * Borrows a connection from the data source. {@code onRelease} runs once the connection
+     * has been given back.
+     */
+    static ConnectionLease borrow(DataSource dataSource, Runnable onRelease) {
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new ORMException("The connection was not established.", e);
+        }
+        if (connection instanceof PooledConnection) {
+            var statementCache = ((PooledConnection) connection).getStatementCache();
+            return new ConnectionLease(connection, statementCache, false, false, onRelease);
+        }
+        return new ConnectionLease(connection, new StatementCache(connection), false, true, onRelease);
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    ConnectionLease retain() {
+        references++;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (pinned || --references > 0) {
+            return;
+        }
+        onRelease.run();
+        if (ownsStatementCache) {
+            statementCache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ORMException("SQLException occurred while closing the connection.", e);
+        }
+    }
+
+    /**
+     * Closes a pinned lease together with its connection.
+     */
+    void closeConnection() {
+        statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ORMException("SQLException occurred while closing the connection.", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package client;
+
+import metadata.EntityMetadata;
+import metadata.OneToManyMetadata;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * List used for {@link annotations.FetchType#LAZY} {@link annotations.OneToMany} fields.
+ * The elements are loaded by the {@link ORMManager} that created the list on the first
+ * access to the list, within the session of the thread making that access: they join its
+ * identity map, not the one of the session that loaded the owner, which may belong to
+ * another thread or be closed by then. The list is not thread-safe, so it must not be
+ * accessed by several threads at once.
+ *
+ * @param <E> type of the elements
+ */
+public class LazyList<E> extends AbstractList<E> {
+    private final ORMManager ormManager;
+    private final EntityMetadata ownerMetadata;
+    private final OneToManyMetadata relation;
+    private final Long ownerId;
+    private List<E> delegate;
+
+    LazyList(
+            ORMManager ormManager,
+            EntityMetadata ownerMetadata,
+            OneToManyMetadata relation,
+            Long ownerId) {
+        this.ormManager = ormManager;
+        this.ownerMetadata = ownerMetadata;
+        this.relation = relation;
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * Whether the elements have already been loaded from the database.
+     */
+    public boolean isLoaded() {
+        return delegate != null;
+    }
+
+    private List<E> delegate() {
+        if (delegate == null) {
+            delegate = ormManager.fetchLazyRelation(ownerMetadata, relation, ownerId);
+        }
+        return delegate;
+    }
+
+    @Override
+    public E get(int index) {
+        return delegate().get(index);
+    }
+
+    @Override
+    public int size() {
+        return delegate().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return delegate().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        delegate().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        modCount++;
+        return delegate().remove(index);
+    }
+}
@@ -2,25 +2,44 @@ package client;
 
 import annotations.Column;
 import annotations.Entity;
+import annotations.FetchType;
 import annotations.Id;
+import annotations.Index;
 import annotations.ManyToOne;
 import annotations.OneToMany;
+import cache.PersistenceContext;
+import cache.SecondLevelCache;
 import exceptions.ORMException;
+import jdbc.Operation;
+import jdbc.StatementCache;
+import jdbc.StatementKey;
+import jdbc.TypeConverter;
+import jdbc.TypeConverters;
 import lombok.extern.slf4j.Slf4j;
+import metadata.EntityMetadata;
+import metadata.EntityMetadataRegistry;
+import metadata.ManyToOneMetadata;
+import metadata.OneToManyMetadata;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+import query.Criteria;
+import query.Projection;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
 import java.sql.Connection;
-import java.sql.Date;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -28,27 +47,66 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Properties;
-
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.StringJoiner;
 
+import javax.sql.DataSource;
+
+/**
+ * Maps {@link Entity} classes to tables and reads and writes their instances.
+ * <p>
+ * A manager created with a {@link DataSource} is thread-safe and can be shared by all
+ * request handlers: each operation borrows a connection for the calling thread only, and
+ * each thread has its own identity map. A manager created with a single {@link Connection}
+ * is meant to be used by one thread at a time.
+ */
 @Slf4j
 public class ORMManager {
-    private final Connection connection;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /** Maximum number of ids bound to one {@code IN (...)} clause when loading relations. */
+    public static final int MAX_IN_CLAUSE_SIZE = 512;
+    public static final int DEFAULT_FETCH_SIZE = 100;
+    /** Isolation level argument that keeps the isolation level of the connection. */
+    public static final int DEFAULT_ISOLATION = -1;
+
+    /** Source of the connections borrowed per operation, {@code null} with a single connection. */
+    private final DataSource dataSource;
+    /** Pool created by this manager itself, closed by {@link #closeConnection()}. */
+    private final ConnectionPool ownedPool;
+    /** The only session of a manager bound to a single connection, {@code null} otherwise. */
+    private final Session pinnedSession;
+    private final ThreadLocal<Session> sessions = ThreadLocal.withInitial(Session::new);
+    private volatile SecondLevelCache secondLevelCache;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile boolean indexJoinColumns = true;
+    private volatile SchemaMode schemaMode = SchemaMode.CREATE;
 
-    private static final String FAILED_FIELD_GETTING_EXCEPTION = "Failed to get field.";
     private static final String STATEMENT_EXCEPTION = "SQLException occurred in the statement.";
-    private static final String NO_FIELD_WITH_ID_ANNOTATION = "Entity has no field annotated with @Id";
 
+    /**
+     * Creates a manager backed by a {@link ConnectionPool} of connections to the database
+     * whose URL is stored under the given key in {@code db.properties}.
+     */
     public ORMManager(String property) {
         try {
             Properties properties = readProperties();
-            this.connection = DriverManager.getConnection(
+            this.ownedPool = new ConnectionPool(
                     properties.getProperty(property),
                     properties.getProperty("H2.username"),
-                    properties.getProperty("H2.password")
+                    properties.getProperty("H2.password"),
+                    PoolConfig.defaults()
             );
+            this.dataSource = ownedPool;
+            this.pinnedSession = null;
+            ownedPool.getConnection().close();
         } catch (SQLException e) {
             throw new ORMException("The connection was not established.", e);
         } catch (IOException e) {
@@ -56,132 +114,459 @@ public class ORMManager {
         }
     }
 
+    /**
+     * Creates a manager that runs every operation on the given connection. Such a manager
+     * must not be shared between threads.
+     */
     public ORMManager(Connection connection) {
-        this.connection = connection;
+        this.dataSource = null;
+        this.ownedPool = null;
+        this.pinnedSession = new Session();
+        pinnedSession.setLease(ConnectionLease.pinned(connection));
+    }
+
+    /**
+     * Creates a manager that borrows a connection from the data source for every operation
+     * and gives it back afterwards. With a {@link ConnectionPool} the prepared statements
+     * are cached per pooled connection; with other data sources they are cached only for
+     * the duration of one operation.
+     * <p>
+     * Such a manager is thread-safe: every thread works in its own session with its own
+     * identity map and borrows its own connection, while the entity metadata and the
+     * second-level cache are shared. The identity map is cleared when the operation ends,
+     * or when the open {@link UnitOfWork} or transaction of the thread ends, so repeated
+     * reads return the same instance only within one of them.
+     */
+    public ORMManager(DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.ownedPool = null;
+        this.pinnedSession = null;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows sent to the database in one JDBC batch by {@link #saveAll(Collection)}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at a time by {@link #stream(Class)}.
+     * It is also the number of entities whose relations are loaded together.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive.");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public SchemaMode getSchemaMode() {
+        return schemaMode;
+    }
+
+    /**
+     * Sets what {@link #prepareRepositoryFor(Class)} does with existing tables. The default
+     * {@link SchemaMode#CREATE} recreates them; {@link SchemaMode#VALIDATE} and
+     * {@link SchemaMode#UPDATE} keep their rows and only read the schema from
+     * {@code INFORMATION_SCHEMA}.
+     */
+    public void setSchemaMode(SchemaMode schemaMode) {
+        this.schemaMode = Objects.requireNonNull(schemaMode);
+    }
+
+    public boolean isIndexJoinColumns() {
+        return indexJoinColumns;
+    }
+
+    /**
+     * Sets whether {@link #prepareRepositoryFor(Class)} indexes the join column of every
+     * {@link ManyToOne} field, which is looked up by the loading of the inverse
+     * {@link OneToMany} relation. Enabled by default.
+     */
+    public void setIndexJoinColumns(boolean indexJoinColumns) {
+        this.indexJoinColumns = indexJoinColumns;
+    }
+
+    /**
+     * Returns the lease of the running operation, borrowing a connection if there is none.
+     * Every call must be paired with closing the returned lease.
+     */
+    private ConnectionLease acquire() {
+        var session = session();
+        if (session.getLease() == null) {
+            session.setLease(ConnectionLease.borrow(dataSource, () -> {
+                session.setLease(null);
+                session.clearIfIdle();
+            }));
+        }
+        return session.getLease().retain();
+    }
+
+    /**
+     * Whether the manager can be shared between threads, see {@link #ORMManager(DataSource)}.
+     */
+    public boolean isThreadSafe() {
+        return pinnedSession == null;
+    }
+
+    /**
+     * Largest number of operations that can run at the same time without waiting for a
+     * connection: the size of the pool, or {@code fallback} for other data sources.
+     */
+    int getMaxConcurrency(int fallback) {
+        return dataSource instanceof ConnectionPool ? ((ConnectionPool) dataSource).getMaxSize() : fallback;
+    }
+
+    /**
+     * Discards the session of the calling thread, including its identity map. Used when a
+     * thread runs independent tasks, such as the workers of {@link AsyncORMManager}.
+     */
+    void closeSession() {
+        if (pinnedSession == null) {
+            sessions.remove();
+        }
+    }
+
+    private Session session() {
+        return pinnedSession != null ? pinnedSession : sessions.get();
+    }
+
+    private PersistenceContext persistenceContext() {
+        return session().getPersistenceContext();
+    }
+
+    private Connection connection() {
+        return session().getLease().getConnection();
+    }
+
+    private StatementCache statements() {
+        return session().getLease().getStatementCache();
+    }
+
+    public SecondLevelCache getSecondLevelCache() {
+        return secondLevelCache;
+    }
+
+    /**
+     * Attaches a second-level cache, usually {@link SecondLevelCache#shared()}, that is
+     * consulted by {@link #getById(Class, Long)} and {@link #getAll(Class)} before the
+     * database and is invalidated by the writes of this manager. {@code null} detaches it.
+     */
+    public void setSecondLevelCache(SecondLevelCache secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    /**
+     * Clears the identity map of the calling thread's session, so that subsequent reads load
+     * fresh instances. Managers backed by a data source also clear it by themselves, see
+     * {@link #ORMManager(DataSource)}.
+     */
+    public void clear() {
+        persistenceContext().clear();
     }
 
+    /**
+     * Prepares the table of the entity according to the {@link #getSchemaMode() schema mode}.
+     * Referenced entities should be prepared first, so that foreign keys can be created.
+     */
     public void prepareRepositoryFor(Class<?> clazz) {
-        var classDesc = new ArrayList<Field>();
+        if (!clazz.isAnnotationPresent(Entity.class)) {
+            throw new IllegalArgumentException("Class must be marked with @Entity annotation.");
+        }
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        var mode = schemaMode;
+        if (mode == SchemaMode.NONE) {
+            return;
+        }
+        try (var ignored = acquire()) {
+            var classDesc = chooseType(metadata.getDeclaredFields());
+            var existingColumns = mode == SchemaMode.CREATE ? Set.<String>of() : existingColumns(metadata.getTableName());
+            if (mode == SchemaMode.CREATE || mode == SchemaMode.UPDATE && existingColumns.isEmpty()) {
+                createTableFor(classDesc, metadata.getTableName());
+            } else {
+                var missingColumns = new LinkedHashMap<Field, String>();
+                for (var entry : classDesc.entrySet()) {
+                    var columnName = columnName(entry.getKey());
+                    if (columnName != null && !existingColumns.contains(columnName.toUpperCase(Locale.ROOT))) {
+                        missingColumns.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (mode == SchemaMode.VALIDATE) {
+                    validateColumns(metadata.getTableName(), existingColumns, missingColumns);
+                    return;
+                }
+                addColumns(metadata.getTableName(), missingColumns);
+            }
+            createIndexesFor(metadata);
+        }
+    }
 
-        if (clazz.isAnnotationPresent(Entity.class)) {
-            for (var field : clazz.getDeclaredFields()) {
-                field.setAccessible(true);
-                classDesc.add(field);
+    /**
+     * Returns the upper-case names of the columns of the table in the current schema, or an
+     * empty set if there is no such table.
+     */
+    private Set<String> existingColumns(String tableName) {
+        var columns = new HashSet<String>();
+        try (var statement = connection().prepareStatement(
+                "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = ?")) {
+            statement.setString(1, tableName.toUpperCase(Locale.ROOT));
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    columns.add(resultSet.getString(1).toUpperCase(Locale.ROOT));
+                }
             }
-        } else {
-            throw new IllegalArgumentException("Class must be marked with @Entity annotation.");
+        } catch (SQLException throwable) {
+            throw new ORMException(STATEMENT_EXCEPTION, throwable);
         }
-        createTableFor(chooseType(classDesc), clazz.getSimpleName());
+        return columns;
     }
 
-    public void createTableFor(Map<Field, String> classDesc, String tableName) {
-        var sql = sqlStatementForTableCreation(classDesc, tableName);
+    private static void validateColumns(String tableName, Set<String> existingColumns, Map<Field, String> missingColumns) {
+        if (existingColumns.isEmpty()) {
+            throw new ORMException("Table " + tableName + " does not exist.", null);
+        }
+        if (!missingColumns.isEmpty()) {
+            throw new ORMException("Table " + tableName + " has no columns " +
+                    missingColumns.keySet().stream().map(ORMManager::columnName).collect(Collectors.joining(", ")) +
+                    ".", null);
+        }
+        log.info("Table {} has been validated.", tableName);
+    }
 
-        try (var statement = connection.createStatement()) {
-            statement.execute("DROP TABLE IF EXISTS `" + tableName + "`");
+    /**
+     * Adds the columns to the existing table, with a foreign key for each {@link ManyToOne}
+     * column whose referenced table exists.
+     */
+    private void addColumns(String tableName, Map<Field, String> missingColumns) {
+        try (var statement = connection().createStatement()) {
+            for (var entry : missingColumns.entrySet()) {
+                var field = entry.getKey();
+                statement.execute("ALTER TABLE " + tableName + " ADD COLUMN " + columnDefinition(field, entry.getValue()));
+                if (field.isAnnotationPresent(ManyToOne.class)) {
+                    var referencedTable = EntityMetadataRegistry.forClass(field.getType()).getTableName();
+                    if (referencedTable.equals(tableName) || tableExists(referencedTable)) {
+                        statement.execute("ALTER TABLE " + tableName + " ADD " +
+                                foreignKeyDefinition(tableName + "_" + columnName(field) + "_fk", field));
+                    }
+                }
+                log.info("Column {} has been added to {}.", columnName(field), tableName);
+            }
         } catch (SQLException throwable) {
             throw new ORMException(STATEMENT_EXCEPTION, throwable);
         }
-        try (var preparedStatement = connection.prepareStatement(sql)) {
-            preparedStatement.execute();
-            log.info("Table has been created.");
+    }
+
+    /**
+     * Creates the {@link Index indexes} of the entity and, if
+     * {@link #isIndexJoinColumns() enabled}, an index on each {@link ManyToOne} join column
+     * that is not already the leading column of an index, such as the one backing its
+     * foreign key constraint.
+     */
+    private void createIndexesFor(EntityMetadata metadata) {
+        try (var statement = connection().createStatement()) {
+            for (var index : metadata.getIndexes()) {
+                statement.execute(index.getCreateSql());
+            }
+            if (indexJoinColumns) {
+                var indexedColumns = leadingIndexColumns(metadata.getTableName());
+                for (var relation : metadata.getManyToOneRelations()) {
+                    var joinColumn = relation.getJoinColumn();
+                    if (indexedColumns.add(joinColumn.toUpperCase(Locale.ROOT))) {
+                        statement.execute("CREATE INDEX IF NOT EXISTS " + metadata.getTableName() + "_" + joinColumn +
+                                "_idx ON " + metadata.getTableName() + " (" + joinColumn + ")");
+                    }
+                }
+            }
+            log.info("Indexes of {} have been created.", metadata.getTableName());
         } catch (SQLException throwable) {
             throw new ORMException(STATEMENT_EXCEPTION, throwable);
         }
     }
 
+    private Set<String> leadingIndexColumns(String tableName) throws SQLException {
+        var columns = new HashSet<String>();
+        try (var indexInfo = connection().getMetaData()
+                .getIndexInfo(null, null, tableName.toUpperCase(Locale.ROOT), false, false)) {
+            while (indexInfo.next()) {
+                if (indexInfo.getShort("ORDINAL_POSITION") == 1) {
+                    columns.add(indexInfo.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Drops and creates the table. Foreign keys are created only for referenced tables
+     * that already exist, so referenced entities should be prepared first.
+     */
+    public void createTableFor(Map<Field, String> classDesc, String tableName) {
+        try (var ignored = acquire()) {
+            var sql = sqlStatementForTableCreation(classDesc, tableName,
+                    referencedTable -> referencedTable.equals(tableName) || tableExists(referencedTable));
+
+            try (var statement = connection().createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS `" + tableName + "` CASCADE");
+            } catch (SQLException throwable) {
+                throw new ORMException(STATEMENT_EXCEPTION, throwable);
+            }
+            try (var preparedStatement = connection().prepareStatement(sql)) {
+                preparedStatement.execute();
+                log.info("Table has been created.");
+            } catch (SQLException throwable) {
+                throw new ORMException(STATEMENT_EXCEPTION, throwable);
+            }
+        }
+    }
+
+    /**
+     * Returns the SQL types of the columns of the given fields: the types of the
+     * {@link TypeConverter}s of {@link Id} and {@link Column} fields, and {@code BIGINT} for
+     * {@link ManyToOne} join columns. Fields that are not stored in the table are skipped.
+     *
+     * @throws ORMException if a column field has no converter with an SQL type
+     */
     public Map<Field, String> chooseType(List<Field> classDesc) {
         var sqlClassDesc = new LinkedHashMap<Field, String>();
-        var sqlType = "";
         for (var field : classDesc) {
-            var javaType = field.getType().getSimpleName().toLowerCase(Locale.ROOT);
-            if ("string".equals(javaType)) {
-                sqlType = "VARCHAR(255)";
-            } else if ("char".equals(javaType) || "character".equals(javaType)) {
-                sqlType = "CHAR";
-            } else if ("int".equals(javaType) || "integer".equals(javaType)) {
-                sqlType = "INTEGER";
-            } else if ("long".equals(javaType)) {
-                sqlType = "BIGINT";
-            } else if ("short".equals(javaType)) {
-                sqlType = "SMALLINT";
-            } else if ("byte".equals(javaType)) {
-                sqlType = "TINYINT";
-            } else if ("float".equals(javaType)) {
-                sqlType = "REAL";
-            } else if ("double".equals(javaType)) {
-                sqlType = "DOUBLE";
-            } else if ("boolean".equals(javaType)) {
-                sqlType = "BOOLEAN";
-            } else if ("date".equals(javaType) || "localdate".equals(javaType)) {
-                sqlType = "DATE";
-            } else if ("time".equals(javaType) || "localtime".equals(javaType)) {
-                sqlType = "TIME";
-            } else if ("timestamp".equals(javaType)) {
-                sqlType = "TIMESTAMP";
-            } else if ("offsetdatetime".equals(javaType)) {
-                sqlType = "TIMESTAMP_WITH_TIMEZONE";
-            } else if ("byte[]".equals(javaType)) {
-                sqlType = "BINARY";
-            } else if ("bigdecimal".equals(javaType)) {
-                sqlType = "DECIMAL";
-            } else if ("struct".equals(javaType)) {
-                sqlType = "STRUCT";
+            if (columnName(field) == null) {
+                continue;
+            }
+            if (field.isAnnotationPresent(ManyToOne.class)) {
+                sqlClassDesc.put(field, "BIGINT");
+                continue;
+            }
+            var sqlType = TypeConverters.forType(field.getType()).getSqlType();
+            if (sqlType == null) {
+                throw new ORMException(String.format(
+                        "No SQL type for %s.%s of type %s, register a TypeConverter for it.",
+                        field.getDeclaringClass().getSimpleName(), field.getName(), field.getType().getName()), null);
             }
             sqlClassDesc.put(field, sqlType);
         }
         return sqlClassDesc;
     }
 
+    private boolean tableExists(String tableName) {
+        try (var tables = connection().getMetaData()
+                .getTables(null, null, tableName.toUpperCase(Locale.ROOT), new String[]{"TABLE"})) {
+            return tables.next();
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
+
     public String sqlStatementForTableCreation(Map<Field, String> classDesc, String tableName) {
+        return sqlStatementForTableCreation(classDesc, tableName, referencedTable -> true);
+    }
+
+    private String sqlStatementForTableCreation(
+            Map<Field, String> classDesc,
+            String tableName,
+            Predicate<String> withForeignKeyTo) {
         var sql = new StringJoiner(", ", " (", ");");
-        var constraints = new StringBuilder();
+        var foreignKeys = 0;
         for (var entry : classDesc.entrySet()) {
             var field = entry.getKey();
-            var type = entry.getValue();
-
-            if (field.isAnnotationPresent(Id.class)) {
-                sql.add(field.getName() + " " + type + " AUTO_INCREMENT PRIMARY KEY");
-            } else if (field.isAnnotationPresent(Column.class)) {
-                sql.add(field.getName() + " " + type);
+            if (columnName(field) == null) {
+                continue;
             }
-            if (field.isAnnotationPresent(ManyToOne.class)) {
-                sql.add(field.getAnnotation(ManyToOne.class).value() + " BIGINT");
+            sql.add(columnDefinition(field, entry.getValue()));
 
-                Field entityIdField = getEntityIdField(field.getType());
-                sql.add(constraints.append(String.format(
-                        "CONSTRAINT `%s_fk_1` FOREIGN KEY (`%s`) REFERENCES `%s` (`%s`)",
-                        tableName,
-                        field.getAnnotation(ManyToOne.class).value(),
-                        field.getDeclaringClass().getSimpleName(),
-                        entityIdField.getName() // primary key name
-                )));
+            if (field.isAnnotationPresent(ManyToOne.class)) {
+                var referencedMetadata = EntityMetadataRegistry.forClass(field.getType());
+                if (withForeignKeyTo.test(referencedMetadata.getTableName())) {
+                    sql.add(foreignKeyDefinition(String.format("%s_fk_%d", tableName, ++foreignKeys), field));
+                }
             }
         }
         return "CREATE TABLE " + tableName + sql;
     }
 
+    /**
+     * Returns the column of an {@link Id}, {@link Column} or {@link ManyToOne} field, or
+     * {@code null} for fields that are not stored in the table.
+     */
+    private static String columnName(Field field) {
+        if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(Column.class)) {
+            return field.getName();
+        }
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return field.getAnnotation(ManyToOne.class).value();
+        }
+        return null;
+    }
+
+    private static String columnDefinition(Field field, String type) {
+        if (field.isAnnotationPresent(Id.class)) {
+            return field.getName() + " " + type + " AUTO_INCREMENT PRIMARY KEY";
+        }
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return columnName(field) + " BIGINT";
+        }
+        return field.getName() + " " + type;
+    }
+
+    private static String foreignKeyDefinition(String constraintName, Field field) {
+        var referencedMetadata = EntityMetadataRegistry.forClass(field.getType());
+        return String.format(
+                "CONSTRAINT `%s` FOREIGN KEY (`%s`) REFERENCES `%s` (`%s`)",
+                constraintName,
+                columnName(field),
+                referencedMetadata.getTableName(),
+                referencedMetadata.getIdField().getName() // primary key name
+        );
+    }
+
+    /**
+     * Inserts a new entity and assigns the generated id to its {@link Id} field. An entity
+     * whose id is already set is considered persistent and is rejected; use
+     * {@link #saveOrUpdate(Object)} to write entities with assigned ids.
+     */
     public <T> void save(T entity) {
         if (!entity.getClass().isAnnotationPresent(Entity.class)) {
             throw new ORMException("This entity does not have the Entity annotation.", null);
         }
-        if (isEntityPresentInDb(entity)) {
+        var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+        if (metadata.getId(entity) != null) {
             throw new ORMException("Such an entity already exists in the DB.", null);
         }
+        var unitOfWork = session().getUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.scheduleInsert(metadata, entity);
+            return;
+        }
 
-        try (var statement = connection.createStatement()) {
-            var sql = prepareInsertSqlStatementForSaving(entity);
-            statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
+        try (var ignored = acquire()) {
+            var statement = statements().prepare(
+                    StatementKey.of(metadata.getEntityClass(), Operation.INSERT),
+                    metadata::getInsertSql,
+                    Statement.RETURN_GENERATED_KEYS
+            );
+            bindInsertParameters(statement, metadata, entity);
+            statement.executeUpdate();
 
             try (var generatedKeys = statement.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
-                    Field entityIdField = getEntityIdField(entity.getClass());
-                    entityIdField.setAccessible(true);
-                    entityIdField.set(entity, generatedKeys.getLong(1));
+                    metadata.setId(entity, generatedKeys.getLong(1));
+                    invalidateSecondLevelCache(metadata, null);
 
                     log.info("{} has been saved with {} {}",
-                            entity.getClass().getSimpleName(),
-                            entityIdField.getName(),
+                            metadata.getTableName(),
+                            metadata.getIdField().getName(),
                             generatedKeys.getString(1)
                     );
                 } else {
@@ -190,397 +575,1469 @@ public class ORMManager {
             }
         } catch (SQLException throwable) {
             throw new ORMException(STATEMENT_EXCEPTION, throwable);
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
         }
     }
 
-    public <T> void merge(T entity) {
-        Field entityIdField = getEntityIdField(entity.getClass());
+    /**
+     * Saves new entities using JDBC batches of {@link #getBatchSize()} rows. Entities are
+     * grouped by class (in order of first appearance, so referenced entities should come
+     * before the entities referencing them), all batches run in a single transaction and
+     * the generated ids are written back into the {@link Id} fields.
+     */
+    public <T> void saveAll(Collection<T> entities) {
+        var entitiesByClass = new LinkedHashMap<Class<?>, List<T>>();
+        for (var entity : entities) {
+            if (!entity.getClass().isAnnotationPresent(Entity.class)) {
+                throw new ORMException("This entity does not have the Entity annotation.", null);
+            }
+            var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+            if (metadata.getId(entity) != null) {
+                throw new ORMException("Such an entity already exists in the DB.", null);
+            }
+            entitiesByClass.computeIfAbsent(metadata.getEntityClass(), key -> new ArrayList<>()).add(entity);
+        }
+        if (entitiesByClass.isEmpty()) {
+            return;
+        }
+        var unitOfWork = session().getUnitOfWork();
+        if (unitOfWork != null) {
+            for (var group : entitiesByClass.entrySet()) {
+                var metadata = EntityMetadataRegistry.forClass(group.getKey());
+                group.getValue().forEach(entity -> unitOfWork.scheduleInsert(metadata, entity));
+            }
+            return;
+        }
 
-        if (isEntityPresentInDb(entity)) {
-            var sql = prepareUpdateSqlStatementForMerging(entity, entityIdField);
+        try (var ignored = acquire()) {
+            atomically(() -> {
+                for (var group : entitiesByClass.entrySet()) {
+                    var metadata = EntityMetadataRegistry.forClass(group.getKey());
+                    insertInBatches(metadata, group.getValue());
+                    invalidateSecondLevelCache(metadata, null);
+                }
+            });
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
 
-            try (var prepareStatement = connection.prepareStatement(sql)) {
-                var id = getEntityId(entity);
-                prepareStatement.setLong(1, id);
-                prepareStatement.executeUpdate();
+    private <T> void insertInBatches(EntityMetadata metadata, List<T> entities) throws SQLException {
+        var statement = statements().prepare(
+                StatementKey.of(metadata.getEntityClass(), Operation.INSERT),
+                metadata::getInsertSql,
+                Statement.RETURN_GENERATED_KEYS
+        );
+        for (var from = 0; from < entities.size(); from += batchSize) {
+            var chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+            for (var entity : chunk) {
+                bindInsertParameters(statement, metadata, entity);
+                statement.addBatch();
+            }
+            statement.executeBatch();
 
-                log.info("{} has been merged.",
-                        entity.getClass().getSimpleName()
-                );
-            } catch (SQLException e) {
-                throw new ORMException(STATEMENT_EXCEPTION, e);
+            try (var generatedKeys = statement.getGeneratedKeys()) {
+                for (var entity : chunk) {
+                    if (!generatedKeys.next()) {
+                        throw new ORMException("Creating entity failed, no ID obtained.", null);
+                    }
+                    metadata.setId(entity, generatedKeys.getLong(1));
+                }
             }
+        }
+        log.info("{} {} entities have been saved", entities.size(), metadata.getTableName());
+    }
+
+    /**
+     * Inserts the entity if its id is not set, otherwise writes it with a single
+     * {@code MERGE INTO ... KEY(id)} statement that updates the row or inserts it with the
+     * given id.
+     */
+    public <T> void saveOrUpdate(T entity) {
+        if (!entity.getClass().isAnnotationPresent(Entity.class)) {
+            throw new ORMException("This entity does not have the Entity annotation.", null);
+        }
+        var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+        if (metadata.getId(entity) == null) {
+            save(entity);
+            return;
+        }
+        var unitOfWork = session().getUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.scheduleUpsert(metadata, entity);
+            return;
+        }
+
+        try (var ignored = acquire()) {
+            var statement = prepareUpsertStatement(metadata);
+            bindUpsertParameters(statement, metadata, entity);
+            statement.executeUpdate();
+            evictStaleInstance(metadata, entity);
+            invalidateSecondLevelCache(metadata, metadata.getId(entity));
+
+            log.info("{} has been saved or updated.", metadata.getTableName());
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
 
-        } else {
+    /**
+     * Writes the {@link Column} properties of a persistent entity. An entity loaded in the
+     * calling session is compared with the snapshot taken when it was loaded: only the
+     * changed columns are updated; when no column changed nothing is written, but the row
+     * is still checked to exist. Other entities have all their columns written.
+     *
+     * @throws ORMException if the row of the entity does not exist
+     */
+    public <T> void merge(T entity) {
+        var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+        var unitOfWork = session().getUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.scheduleUpdate(metadata, entity);
+            return;
+        }
+        var context = persistenceContext();
+        var snapshot = context.getSnapshot(entity);
+        var changedColumns = snapshot == null ? null : metadata.changedColumns(entity, snapshot);
+        var unchanged = changedColumns != null && changedColumns.isEmpty();
+
+        int updatedRows;
+        try (var ignored = acquire()) {
+            if (unchanged) {
+                updatedRows = countRows(metadata, metadata.getId(entity));
+            } else {
+                var statement = prepareUpdateStatement(metadata, changedColumns);
+                bindUpdateParameters(statement, metadata, entity, changedColumns);
+                updatedRows = statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+        if (updatedRows == 0) {
             throw new ORMException("There is no such entity in the database.", new NoSuchElementException());
         }
+        if (unchanged) {
+            log.debug("{} is unchanged, nothing to merge.", metadata.getTableName());
+            return;
+        }
+        evictStaleInstance(metadata, entity);
+        if (snapshot != null) {
+            context.putSnapshot(entity, metadata.snapshot(entity));
+        }
+        invalidateSecondLevelCache(metadata, metadata.getId(entity));
+
+        log.info("{} has been merged.",
+                entity.getClass().getSimpleName()
+        );
+    }
+
+    /**
+     * Returns 1 if the row with the given id exists, 0 otherwise.
+     */
+    private int countRows(EntityMetadata metadata, Long id) throws SQLException {
+        var statement = statements().prepare(
+                StatementKey.of(metadata.getEntityClass(), Operation.EXISTS_BY_ID),
+                () -> "SELECT 1 FROM " + metadata.getTableName() +
+                        " WHERE " + metadata.getIdProperty().getColumnName() + " = ?"
+        );
+        statement.setLong(1, id);
+        try (var resultSet = statement.executeQuery()) {
+            return resultSet.next() ? 1 : 0;
+        }
+    }
+
+    /**
+     * Drops the instance loaded for the same row from the identity map when it is not the
+     * instance that has just been written.
+     */
+    private void evictStaleInstance(EntityMetadata metadata, Object entity) {
+        var id = metadata.getId(entity);
+        var context = persistenceContext();
+        if (id != null && context.get(metadata.getEntityClass(), id) != entity) {
+            context.evict(metadata.getEntityClass(), id);
+        }
+    }
+
+    /**
+     * Opens a {@link UnitOfWork} for the calling thread. Until it is closed, the writes of
+     * the thread are queued and executed by {@link UnitOfWork#flush()}.
+     *
+     * @throws IllegalStateException if the thread already has an open unit of work
+     */
+    public UnitOfWork beginUnitOfWork() {
+        var session = session();
+        if (session.getUnitOfWork() != null) {
+            throw new IllegalStateException("A unit of work is already open.");
+        }
+        var unitOfWork = new UnitOfWork(this, session);
+        session.setUnitOfWork(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * Starts a transaction of the calling thread with the default isolation level of the
+     * connection, see {@link #beginTransaction(int)}.
+     */
+    public void beginTransaction() {
+        beginTransaction(DEFAULT_ISOLATION);
+    }
+
+    /**
+     * Starts a transaction of the calling thread. Until {@link #commit()} or
+     * {@link #rollback()}, all operations of the thread run on one connection with
+     * auto-commit turned off, so their writes are committed together or not at all.
+     *
+     * @param isolationLevel one of the {@code Connection.TRANSACTION_*} levels
+     * @throws IllegalStateException if the thread already has an active transaction
+     */
+    public void beginTransaction(int isolationLevel) {
+        var session = session();
+        if (session.getTransaction() != null) {
+            throw new IllegalStateException("A transaction is already active.");
+        }
+        var transactionLease = acquire();
+        try {
+            var connection = transactionLease.getConnection();
+            var transaction = new Transaction(
+                    transactionLease, connection.getAutoCommit(), connection.getTransactionIsolation());
+            if (isolationLevel != DEFAULT_ISOLATION) {
+                connection.setTransactionIsolation(isolationLevel);
+            }
+            connection.setAutoCommit(false);
+            session.setTransaction(transaction);
+        } catch (SQLException e) {
+            transactionLease.close();
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
+
+    public boolean isTransactionActive() {
+        return session().getTransaction() != null;
+    }
+
+    /**
+     * Flushes the open {@link UnitOfWork} of the thread, if any, and commits the transaction.
+     * If either fails the transaction is rolled back and the failure is rethrown, with a
+     * failure of the rollback added to it as suppressed.
+     *
+     * @throws IllegalStateException if the thread has no active transaction
+     */
+    public void commit() {
+        var transaction = activeTransaction();
+        try {
+            var unitOfWork = session().getUnitOfWork();
+            if (unitOfWork != null) {
+                unitOfWork.flush();
+            }
+            connection().commit();
+        } catch (SQLException e) {
+            var failure = new ORMException(STATEMENT_EXCEPTION, e);
+            rollbackAfter(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            rollbackAfter(e);
+            throw e;
+        }
+        endTransaction(transaction);
+        var cache = secondLevelCache;
+        if (cache != null) {
+            transaction.getEvictions().forEach((clazz, ids) -> ids.forEach(id -> cache.evict(clazz, id)));
+        }
+        log.info("Transaction has been committed.");
+    }
+
+    /**
+     * Rolls the transaction back. The writes queued in the open {@link UnitOfWork} of the
+     * thread are discarded, and so is the identity map, whose instances may reflect writes
+     * that have just been undone. The second-level cache holds none of them, as rows read in
+     * a transaction are not put in it.
+     *
+     * @throws IllegalStateException if the thread has no active transaction
+     */
+    public void rollback() {
+        var transaction = activeTransaction();
+        try {
+            connection().rollback();
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        } finally {
+            var unitOfWork = session().getUnitOfWork();
+            if (unitOfWork != null) {
+                unitOfWork.close();
+            }
+            persistenceContext().clear();
+            endTransaction(transaction);
+        }
+        log.info("Transaction has been rolled back.");
+    }
+
+    /**
+     * Runs the work in a transaction with the default isolation level, see
+     * {@link #inTransaction(int, Consumer)}.
+     */
+    public void inTransaction(Consumer<ORMManager> work) {
+        inTransaction(DEFAULT_ISOLATION, work);
+    }
+
+    /**
+     * Runs the work in a transaction that is committed when the work completes and rolled
+     * back when it throws. The exception of the work is rethrown, with a failure of the
+     * rollback added to it as suppressed.
+     */
+    public void inTransaction(int isolationLevel, Consumer<ORMManager> work) {
+        beginTransaction(isolationLevel);
+        try {
+            work.accept(this);
+        } catch (RuntimeException | Error e) {
+            rollbackAfter(e);
+            throw e;
+        }
+        commit();
+    }
+
+    /**
+     * Rolls the transaction back after the failure, adding a failure of the rollback to it
+     * as suppressed, so that the original failure is the one rethrown.
+     */
+    private void rollbackAfter(Throwable failure) {
+        try {
+            rollback();
+        } catch (RuntimeException | Error rollbackFailure) {
+            failure.addSuppressed(rollbackFailure);
+        }
+    }
+
+    private Transaction activeTransaction() {
+        var transaction = session().getTransaction();
+        if (transaction == null) {
+            throw new IllegalStateException("No transaction is active.");
+        }
+        return transaction;
+    }
+
+    private void endTransaction(Transaction transaction) {
+        session().setTransaction(null);
+        try {
+            var connection = connection();
+            connection.setAutoCommit(transaction.isPreviousAutoCommit());
+            if (connection.getTransactionIsolation() != transaction.getPreviousIsolationLevel()) {
+                connection.setTransactionIsolation(transaction.getPreviousIsolationLevel());
+            }
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        } finally {
+            transaction.getLease().close();
+        }
+    }
+
+    /**
+     * Runs the writes in the active transaction of the thread, or in a transaction of their
+     * own when there is none, so that they are committed together or not at all.
+     */
+    private void atomically(SqlAction action) throws SQLException {
+        if (session().getTransaction() != null) {
+            action.run();
+            return;
+        }
+        var connection = connection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            action.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Executes the writes queued in the unit of work atomically: inserts and upserts
+     * in {@link UnitOfWork#flushOrder()}, then updates, then deletes in reverse order.
+     * Every table and operation is written with JDBC batches of {@link #getBatchSize()} rows.
+     * If the writes fail, the ids assigned to inserted entities are cleared.
+     */
+    void flush(UnitOfWork unitOfWork) {
+        if (unitOfWork.size() == 0) {
+            return;
+        }
+        var order = unitOfWork.flushOrder();
+        var context = persistenceContext();
+        var flushedUpdates = new ArrayList<Object>();
+
+        try (var ignored = acquire()) {
+            atomically(() -> {
+                for (var clazz : order) {
+                    var metadata = EntityMetadataRegistry.forClass(clazz);
+                    var inserts = unitOfWork.getInserts().getOrDefault(clazz, List.of());
+                    if (!inserts.isEmpty()) {
+                        insertInBatches(metadata, inserts);
+                    }
+                    var upserts = unitOfWork.getUpserts().getOrDefault(clazz, List.of());
+                    if (!upserts.isEmpty()) {
+                        upsertInBatches(metadata, upserts);
+                    }
+                }
+                for (var clazz : order) {
+                    var updates = unitOfWork.getUpdates().getOrDefault(clazz, Set.of());
+                    if (!updates.isEmpty()) {
+                        flushedUpdates.addAll(updateInBatches(context, EntityMetadataRegistry.forClass(clazz), updates));
+                    }
+                }
+                for (var i = order.size() - 1; i >= 0; i--) {
+                    var deletes = unitOfWork.getDeletes().getOrDefault(order.get(i), Set.of());
+                    if (!deletes.isEmpty()) {
+                        deleteInBatches(EntityMetadataRegistry.forClass(order.get(i)), deletes);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            clearAssignedIds(unitOfWork);
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        } catch (RuntimeException e) {
+            clearAssignedIds(unitOfWork);
+            throw e;
+        }
+
+        for (var clazz : order) {
+            var metadata = EntityMetadataRegistry.forClass(clazz);
+            invalidateSecondLevelCache(metadata, null);
+            for (var entity : unitOfWork.getUpserts().getOrDefault(clazz, List.of())) {
+                evictStaleInstance(metadata, entity);
+                invalidateSecondLevelCache(metadata, metadata.getId(entity));
+            }
+            for (var entity : unitOfWork.getDeletes().getOrDefault(clazz, Set.of())) {
+                context.evict(clazz, metadata.getId(entity));
+                invalidateSecondLevelCache(metadata, metadata.getId(entity));
+            }
+        }
+        for (var entity : flushedUpdates) {
+            var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+            evictStaleInstance(metadata, entity);
+            if (context.getSnapshot(entity) != null) {
+                context.putSnapshot(entity, metadata.snapshot(entity));
+            }
+            invalidateSecondLevelCache(metadata, metadata.getId(entity));
+        }
+        log.info("Unit of work with {} writes has been flushed.", unitOfWork.size());
+    }
+
+    private static void clearAssignedIds(UnitOfWork unitOfWork) {
+        for (var inserts : unitOfWork.getInserts().entrySet()) {
+            var metadata = EntityMetadataRegistry.forClass(inserts.getKey());
+            inserts.getValue().forEach(entity -> metadata.setId(entity, null));
+        }
+    }
+
+    private void upsertInBatches(EntityMetadata metadata, List<Object> entities) throws SQLException {
+        var statement = prepareUpsertStatement(metadata);
+        for (var from = 0; from < entities.size(); from += batchSize) {
+            for (var entity : entities.subList(from, Math.min(from + batchSize, entities.size()))) {
+                bindUpsertParameters(statement, metadata, entity);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Updates the changed columns of the entities, grouping the entities with the same
+     * changed columns into one batch. Returns the entities that have actually been written.
+     */
+    private List<Object> updateInBatches(PersistenceContext context, EntityMetadata metadata, Set<Object> entities)
+            throws SQLException {
+        var entitiesByChangedColumns = new LinkedHashMap<BitSet, List<Object>>();
+        var allColumns = new ArrayList<Object>();
+        for (var entity : entities) {
+            var snapshot = context.getSnapshot(entity);
+            if (snapshot == null) {
+                allColumns.add(entity);
+                continue;
+            }
+            var changedColumns = metadata.changedColumns(entity, snapshot);
+            if (!changedColumns.isEmpty()) {
+                entitiesByChangedColumns.computeIfAbsent(changedColumns, key -> new ArrayList<>()).add(entity);
+            }
+        }
+        if (!allColumns.isEmpty()) {
+            entitiesByChangedColumns.put(null, allColumns);
+        }
+
+        var updated = new ArrayList<>();
+        for (var group : entitiesByChangedColumns.entrySet()) {
+            var statement = prepareUpdateStatement(metadata, group.getKey());
+            var batch = group.getValue();
+            for (var from = 0; from < batch.size(); from += batchSize) {
+                for (var entity : batch.subList(from, Math.min(from + batchSize, batch.size()))) {
+                    bindUpdateParameters(statement, metadata, entity, group.getKey());
+                    statement.addBatch();
+                }
+                checkRowsAffected(statement.executeBatch());
+            }
+            updated.addAll(batch);
+        }
+        return updated;
+    }
+
+    private void deleteInBatches(EntityMetadata metadata, Set<Object> entities) throws SQLException {
+        var statement = statements().prepare(
+                StatementKey.of(metadata.getEntityClass(), Operation.DELETE),
+                metadata::getDeleteSql
+        );
+        var batch = new ArrayList<>(entities);
+        for (var from = 0; from < batch.size(); from += batchSize) {
+            for (var entity : batch.subList(from, Math.min(from + batchSize, batch.size()))) {
+                metadata.getIdProperty().bind(statement, 1, entity);
+                statement.addBatch();
+            }
+            checkRowsAffected(statement.executeBatch());
+        }
+    }
+
+    private static void checkRowsAffected(int[] updateCounts) {
+        for (var count : updateCounts) {
+            if (count == 0) {
+                throw new ORMException("There is no such entity in the database.", new NoSuchElementException());
+            }
+        }
     }
 
     public <T> T getById(Class<T> clazz, Long id) {
-        String sql = prepareSelectSqlStatementForGettingEntityById(clazz);
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        try (var ignored = acquire()) {
+            T entity = clazz.cast(loadById(persistenceContext(), metadata, id));
+            if (entity != null) {
+                fetchRelations(persistenceContext(), metadata, List.of(entity));
+            }
+            return entity;
+        }
+    }
+
+    /**
+     * Loads one entity with its {@link FetchType#JOIN} relations but without its other
+     * relations. The identity map is consulted first, then the second-level cache and
+     * finally the database.
+     */
+    private Object loadById(PersistenceContext context, EntityMetadata metadata, Long id) {
+        var clazz = metadata.getEntityClass();
+        var entity = context.get(clazz, id);
+        if (entity != null) {
+            return entity;
+        }
+        var cache = secondLevelCacheFor(clazz);
+        if (cache != null) {
+            var state = cache.getState(clazz, id);
+            if (state != null) {
+                return hydrateFromState(context, metadata, id, state);
+            }
+        }
 
-        try (var statement = connection.prepareStatement(sql)) {
+        var cachePut = cachePutFor(clazz);
+        try {
+            var statement = statements().prepare(
+                    StatementKey.of(clazz, Operation.SELECT_BY_ID),
+                    () -> prepareSelectSqlStatement(metadata) + " WHERE " +
+                            metadata.getTableName() + "." + metadata.getIdField().getName() + "= ?"
+            );
             statement.setLong(1, id);
             try (var resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-
-                    var o = (T) convertResultSetRowToJavaObject(clazz, resultSet);
-                    fetchRelations(o);
-                    return o;
+                    entity = convertResultSetRowToJavaObject(context, clazz, resultSet, cachePut);
                 }
             }
         } catch (SQLException e) {
             throw new ORMException(STATEMENT_EXCEPTION, e);
         }
-        return null;
+        return entity;
     }
 
-    private <T> String prepareSelectSqlStatementForGettingEntityById(Class<T> clazz) {
-        var selectBody = getSelectBodyForDbRequest(clazz);
-        return "SELECT " + String.join(", ", selectBody) + " FROM " +
-                clazz.getSimpleName() + " WHERE " + getEntityIdField(clazz).getName() + "= ?";
+    public <T> List<T> getAll(Class<T> clazz) {
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        try (var ignored = acquire()) {
+            var cache = secondLevelCacheFor(clazz);
+            if (cache != null) {
+                var cachedObjects = getAllFromSecondLevelCache(cache, persistenceContext(), metadata);
+                if (cachedObjects != null) {
+                    fetchRelations(persistenceContext(), metadata, cachedObjects);
+                    return cachedObjects.stream().map(clazz::cast).collect(Collectors.toList());
+                }
+            }
+
+            var cachePut = cachePutFor(clazz);
+            var allObjects = new ArrayList<T>();
+            try {
+                var statement = statements().prepare(
+                        StatementKey.of(clazz, Operation.SELECT_ALL),
+                        () -> prepareSelectSqlStatement(metadata)
+                );
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        allObjects.add(clazz.cast(convertResultSetRowToJavaObject(persistenceContext(), clazz, resultSet, cachePut)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new ORMException(STATEMENT_EXCEPTION, e);
+            }
+            if (cachePut != null) {
+                cachePut.putAllIds(allObjects.stream().map(metadata::getId).collect(Collectors.toList()));
+            }
+            fetchRelations(persistenceContext(), metadata, allObjects);
+            return allObjects;
+        }
     }
 
-    public <T> List<T> getAll(Class<T> clazz) {
-        String sql = prepareSelectSqlStatementForGettingAllEntities(clazz);
-        var allObjects = new ArrayList<T>();
-        try (var statement = connection.prepareStatement(sql)) {
+    /**
+     * Returns at most {@code limit} entities whose id is greater than {@code afterId}, ordered
+     * by id, with their relations loaded in batches. {@code null} starts at the first entity.
+     * Unlike {@code OFFSET} paging the database seeks directly to {@code afterId} through the
+     * primary key index, so every page costs the same.
+     */
+    public <T> Page<T> page(Class<T> clazz, Long afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive.");
+        }
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        var idColumn = metadata.getTableName() + "." + metadata.getIdProperty().getColumnName();
+        var first = afterId == null;
+
+        try (var ignored = acquire()) {
+            var items = new ArrayList<T>(limit);
+            var hasMore = false;
+            var cachePut = cachePutFor(clazz);
+            try {
+                var statement = statements().prepare(
+                        StatementKey.of(clazz, Operation.SELECT_PAGE, first ? "first" : "after"),
+                        () -> prepareSelectSqlStatement(metadata) +
+                                (first ? "" : " WHERE " + idColumn + " > ?") +
+                                " ORDER BY " + idColumn + " LIMIT ?"
+                );
+                var index = 1;
+                if (!first) {
+                    statement.setLong(index++, afterId);
+                }
+                statement.setInt(index, limit + 1);
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        if (items.size() == limit) {
+                            hasMore = true;
+                            break;
+                        }
+                        items.add(clazz.cast(convertResultSetRowToJavaObject(persistenceContext(), clazz, resultSet, cachePut)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new ORMException(STATEMENT_EXCEPTION, e);
+            }
+            fetchRelations(persistenceContext(), metadata, items);
+
+            var lastId = items.isEmpty() ? afterId : metadata.getId(items.get(items.size() - 1));
+            return new Page<>(items, lastId, hasMore);
+        }
+    }
+
+    /**
+     * Returns the entities matching the criteria, with their relations loaded in batches.
+     * Filtering, ordering and limiting are done by the database. One statement is prepared
+     * per {@link Criteria#getShape() shape} of the criteria and reused for all values.
+     */
+    public <T> List<T> find(Criteria<T> criteria) {
+        var clazz = criteria.getEntityClass();
+        var metadata = criteria.getMetadata();
+        var entities = new ArrayList<T>();
+        try (var ignored = acquire()) {
+            var cachePut = cachePutFor(clazz);
+            try {
+                var statement = statements().prepare(
+                        StatementKey.of(clazz, Operation.SELECT_CRITERIA, criteria.getShape()),
+                        () -> prepareSelectSqlStatement(metadata) + criteria.getSqlClauses()
+                );
+                criteria.bind(statement);
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        entities.add(clazz.cast(convertResultSetRowToJavaObject(persistenceContext(), clazz, resultSet, cachePut)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new ORMException(STATEMENT_EXCEPTION, e);
+            }
+            fetchRelations(persistenceContext(), metadata, entities);
+        }
+        return entities;
+    }
+
+    /**
+     * Returns the selected columns of all entities as projections, see {@link Projection}.
+     */
+    public <T, P> List<P> project(Projection<T, P> projection) {
+        return project(projection, Criteria.of(projection.getEntityClass()));
+    }
+
+    /**
+     * Returns the selected columns of the entities matching the criteria as projections.
+     * Rows are mapped straight to the projection type: no entity is created, cached or
+     * has its relations fetched.
+     */
+    public <T, P> List<P> project(Projection<T, P> projection, Criteria<T> criteria) {
+        if (criteria.getEntityClass() != projection.getEntityClass()) {
+            throw new IllegalArgumentException("Criteria and projection refer to different entities.");
+        }
+        var projections = new ArrayList<P>();
+        try (var ignored = acquire()) {
+            var statement = statements().prepare(
+                    StatementKey.of(
+                            projection.getEntityClass(),
+                            Operation.SELECT_PROJECTION,
+                            projection.getShape() + "|" + criteria.getShape()
+                    ),
+                    () -> projection.getSelectSql() + criteria.getSqlClauses()
+            );
+            criteria.bind(statement);
             try (var resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    var o = (T) convertResultSetRowToJavaObject(clazz, resultSet);
-                    fetchRelations(o);
-                    allObjects.add(o);
+                    projections.add(projection.map(resultSet));
                 }
-                return allObjects;
             }
         } catch (SQLException e) {
             throw new ORMException(STATEMENT_EXCEPTION, e);
         }
+        return projections;
     }
 
-    private <T> String prepareSelectSqlStatementForGettingAllEntities(Class<T> clazz) {
-        var selectBody = getSelectBodyForDbRequest(clazz);
-        return "SELECT " + String.join(", ", selectBody) + " FROM " +
-                clazz.getSimpleName();
+    /**
+     * Returns a cursor over all entities of the class in pages of {@code limit} entities.
+     */
+    public <T> PageCursor<T> pages(Class<T> clazz, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive.");
+        }
+        return new PageCursor<>(this, clazz, null, limit);
     }
 
-    private <T> void fetchRelations(T entity) {
+    /**
+     * Returns a lazily populated stream of all entities of the class, read through a
+     * forward-only cursor of {@link #getFetchSize()} rows. Entities are hydrated chunk by
+     * chunk, each chunk with its own identity map and its relations loaded in batches,
+     * so memory stays bounded by the chunk size rather than by the size of the table.
+     * <p>
+     * Entities of different chunks are not shared with each other or with the identity map
+     * of this manager. The stream holds an open statement and its connection and must be
+     * closed, preferably with try-with-resources; it is also closed once it has been fully
+     * consumed.
+     */
+    public <T> Stream<T> stream(Class<T> clazz) {
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        var streamLease = acquire();
+        PreparedStatement statement = null;
         try {
-            for (var field : entity.getClass().getDeclaredFields()) {
-                field.setAccessible(true);
+            statement = connection().prepareStatement(
+                    prepareSelectSqlStatement(metadata), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            var cachePut = cachePutFor(clazz);
+            var resultSet = statement.executeQuery();
+            var cursor = new EntityCursor<>(clazz, metadata, streamLease, statement, resultSet, cachePut, fetchSize);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            streamLease.close();
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
 
-                if (field.isAnnotationPresent(OneToMany.class) &&
-                        List.class.isAssignableFrom(field.getType())) {
-                    Class<?> objectsType = getTypeOfListObjects(field);
+    private static void closeQuietly(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close a statement", e);
+            }
+        }
+    }
+
+    /**
+     * Spliterator behind {@link #stream(Class)}. It reads the rows of an open result set in
+     * chunks and releases the result set, its statement and the connection when the rows
+     * are exhausted or the stream is closed.
+     */
+    private final class EntityCursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Class<T> clazz;
+        private final EntityMetadata metadata;
+        private final ConnectionLease streamLease;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final CachePut cachePut;
+        private final int chunkSize;
+        private final Deque<T> chunk = new ArrayDeque<>();
+        private boolean closed;
+
+        EntityCursor(
+                Class<T> clazz,
+                EntityMetadata metadata,
+                ConnectionLease streamLease,
+                PreparedStatement statement,
+                ResultSet resultSet,
+                CachePut cachePut,
+                int chunkSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.clazz = clazz;
+            this.metadata = metadata;
+            this.streamLease = streamLease;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.cachePut = cachePut;
+            this.chunkSize = chunkSize;
+        }
 
-                    String getListOfObjects =
-                            prepareSelectStatementForGettingListOfManyToOneObjects(
-                                    entity, field, objectsType
-                            );
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (chunk.isEmpty() && !readChunk()) {
+                return false;
+            }
+            action.accept(chunk.poll());
+            return true;
+        }
+
+        private boolean readChunk() {
+            if (closed) {
+                return false;
+            }
+            var context = new PersistenceContext();
+            var entities = new ArrayList<T>(chunkSize);
+            try (var ignored = acquire()) {
+                try {
+                    while (entities.size() < chunkSize && resultSet.next()) {
+                        entities.add(clazz.cast(convertResultSetRowToJavaObject(context, clazz, resultSet, cachePut)));
+                    }
+                } catch (SQLException e) {
+                    close();
+                    throw new ORMException(STATEMENT_EXCEPTION, e);
+                }
+                if (entities.size() < chunkSize) {
+                    close();
+                }
+                fetchRelations(context, metadata, entities);
+            }
+            chunk.addAll(entities);
+            return !entities.isEmpty();
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(statement);
+                streamLease.close();
+            }
+        }
+    }
+
+    /**
+     * Returns all entities of the class from the second-level cache, or {@code null} when
+     * the list of ids or one of the entities is not cached.
+     */
+    private List<Object> getAllFromSecondLevelCache(
+            SecondLevelCache cache,
+            PersistenceContext context,
+            EntityMetadata metadata) {
+        var clazz = metadata.getEntityClass();
+        var ids = cache.getAllIds(clazz);
+        if (ids == null) {
+            return null;
+        }
+        var entities = new ArrayList<>(ids.size());
+        for (var id : ids) {
+            var entity = context.get(clazz, id);
+            if (entity == null) {
+                var state = cache.getState(clazz, id);
+                if (state == null) {
+                    return null;
+                }
+                entity = hydrateFromState(context, metadata, id, state);
+            }
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * Returns a select of the entity columns followed by the columns of every
+     * {@link FetchType#JOIN} relation, which are {@code LEFT JOIN}ed under an alias.
+     * Rows of this select are read by {@link #convertResultSetRowToJavaObject(PersistenceContext, Class, ResultSet, CachePut)}.
+     */
+    private String prepareSelectSqlStatement(EntityMetadata metadata) {
+        return "SELECT " + prepareSelectColumnsWithJoins(metadata) +
+                " FROM " + prepareFromClauseWithJoins(metadata);
+    }
+
+    private String prepareSelectColumnsWithJoins(EntityMetadata metadata) {
+        var columns = new StringJoiner(", ");
+        columns.add(metadata.getSelectColumns());
+        for (var relation : metadata.getJoinFetchRelations()) {
+            var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+            columns.add(targetMetadata.getSelectColumns(joinAlias(metadata, relation)));
+        }
+        return columns.toString();
+    }
+
+    private String prepareFromClauseWithJoins(EntityMetadata metadata) {
+        var from = new StringBuilder(metadata.getTableName());
+        for (var relation : metadata.getJoinFetchRelations()) {
+            var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+            var alias = joinAlias(metadata, relation);
+            from.append(" LEFT JOIN ")
+                    .append(targetMetadata.getTableName()).append(" ").append(alias)
+                    .append(" ON ")
+                    .append(metadata.getTableName()).append(".").append(relation.getJoinColumn())
+                    .append("=")
+                    .append(alias).append(".").append(targetMetadata.getIdField().getName());
+        }
+        return from.toString();
+    }
+
+    private static String joinAlias(EntityMetadata metadata, ManyToOneMetadata relation) {
+        return metadata.getTableName() + "_" + relation.getField().getName();
+    }
 
-                    try (var pstmt = connection.prepareStatement(getListOfObjects);
-                         var resultSet = pstmt.executeQuery()) {
+    private static int countSelectColumnsWithJoins(EntityMetadata metadata) {
+        var count = metadata.getSelectProperties().size();
+        for (var relation : metadata.getJoinFetchRelations()) {
+            count += EntityMetadataRegistry.forClass(relation.getTargetType()).getSelectProperties().size();
+        }
+        return count;
+    }
 
-                        var newListWithObjectsFromDb = new ArrayList<>();
-                        while (resultSet.next()) {
-                            Object newObject = convertResultSetRowToJavaObject(objectsType, resultSet);
-                            fetchRelations(newObject);
+    /**
+     * Loads the relations of all given entities of one class. Every relation is loaded with
+     * one {@code WHERE ... IN (...)} query per chunk of at most {@link #MAX_IN_CLAUSE_SIZE}
+     * ids and stitched into the entities in memory, so the number of queries does not grow
+     * with the number of entities. {@link OneToMany} children are loaded recursively.
+     * {@link FetchType#JOIN} relations have already been read with their owners and are skipped.
+     */
+    private void fetchRelations(PersistenceContext context, EntityMetadata metadata, List<?> entities) {
+        if (entities.isEmpty() || !metadata.hasRelations()) {
+            return;
+        }
+        var entitiesById = new LinkedHashMap<Long, List<Object>>();
+        for (var entity : entities) {
+            if (!context.hasRelationsLoaded(entity)) {
+                context.markRelationsLoaded(entity);
+                entitiesById.computeIfAbsent(metadata.getId(entity), id -> new ArrayList<>()).add(entity);
+            }
+        }
+        if (entitiesById.isEmpty()) {
+            return;
+        }
+        var ids = new ArrayList<>(entitiesById.keySet());
 
-                            newListWithObjectsFromDb.add(newObject);
+        try {
+            for (var relation : metadata.getOneToManyRelations()) {
+                if (relation.isLazy()) {
+                    for (var parents : entitiesById.entrySet()) {
+                        for (var parent : parents.getValue()) {
+                            relation.getProperty().set(parent,
+                                    new LazyList<>(this, metadata, relation, parents.getKey()));
                         }
-                        field.set(entity, newListWithObjectsFromDb);
                     }
+                    continue;
                 }
-                if (field.isAnnotationPresent(ManyToOne.class)) {
-                    Class<?> oneToManyObjectType = field.getType();
-
-                    String getOneToManyObject =
-                            prepareSelectSqlStatementForGettingOneToManyObject(
-                                    entity, field, oneToManyObjectType
-                            );
+                var childrenByParentId = fetchOneToManyRelation(context, metadata, relation, ids);
+
+                var allChildren = new ArrayList<>();
+                for (var parents : entitiesById.entrySet()) {
+                    var children = childrenByParentId.getOrDefault(parents.getKey(), List.of());
+                    allChildren.addAll(children);
+                    for (var parent : parents.getValue()) {
+                        relation.getProperty().set(parent, new ArrayList<>(children));
+                    }
+                }
+                fetchRelations(context, EntityMetadataRegistry.forClass(relation.getElementType()), allChildren);
+            }
+            for (var relation : metadata.getManyToOneRelations()) {
+                if (relation.isJoinFetch()) {
+                    continue;
+                }
+                var targetsByOwnerId = fetchManyToOneRelation(context, metadata, relation, ids);
 
-                    try (var pstmt = connection.prepareStatement(getOneToManyObject);
-                         var resultSet = pstmt.executeQuery()) {
-                        if (resultSet.next()) {
-                            field.set(entity, convertResultSetRowToJavaObject(oneToManyObjectType, resultSet));
+                for (var owners : entitiesById.entrySet()) {
+                    var target = targetsByOwnerId.get(owners.getKey());
+                    if (target != null) {
+                        for (var owner : owners.getValue()) {
+                            relation.getProperty().set(owner, target);
                         }
                     }
                 }
             }
-            log.info("In {} object relations have been fetched", entity);
+            log.info("Relations of {} {} objects have been fetched", ids.size(), metadata.getTableName());
         } catch (SQLException e) {
             throw new ORMException(STATEMENT_EXCEPTION, e);
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
         }
     }
 
-    private <T> String prepareSelectStatementForGettingListOfManyToOneObjects(
-            T entity,
-            Field field,
-            Class<?> objectsType) {
+    /**
+     * Loads the elements of a {@link LazyList} together with their own relations into the
+     * identity map of the calling thread.
+     */
+    <E> List<E> fetchLazyRelation(
+            EntityMetadata metadata,
+            OneToManyMetadata relation,
+            Long parentId) {
+        try (var ignored = acquire()) {
+            var context = persistenceContext();
+            List<Object> children;
+            try {
+                children = fetchOneToManyRelation(context, metadata, relation, List.of(parentId))
+                        .getOrDefault(parentId, new ArrayList<>());
+            } catch (SQLException e) {
+                throw new ORMException(STATEMENT_EXCEPTION, e);
+            }
+            fetchRelations(context, EntityMetadataRegistry.forClass(relation.getElementType()), children);
+
+            @SuppressWarnings("unchecked")
+            var elements = (List<E>) children;
+            return elements;
+        }
+    }
 
-        Long entityId = getEntityId(entity);
+    private Map<Long, List<Object>> fetchOneToManyRelation(
+            PersistenceContext context,
+            EntityMetadata metadata,
+            OneToManyMetadata relation,
+            List<Long> parentIds) throws SQLException {
+
+        var objectsMetadata = EntityMetadataRegistry.forClass(relation.getElementType());
+        var parentIdColumn = countSelectColumnsWithJoins(objectsMetadata) + 1;
+        var childrenByParentId = new HashMap<Long, List<Object>>();
+
+        for (var from = 0; from < parentIds.size(); from += MAX_IN_CLAUSE_SIZE) {
+            var chunk = parentIds.subList(from, Math.min(from + MAX_IN_CLAUSE_SIZE, parentIds.size()));
+            var parameters = StatementKey.inClauseSize(chunk.size());
+            var pstmt = statements().prepare(
+                    StatementKey.of(metadata.getEntityClass(), Operation.SELECT_ONE_TO_MANY,
+                            relation.getField().getName() + ":" + parameters),
+                    () -> prepareSelectStatementForGettingListOfManyToOneObjects(objectsMetadata, relation, parameters)
+            );
+            bindInClause(pstmt, chunk, parameters);
 
-        List<String> selectBody = getSelectBodyForDbRequest(objectsType);
-        return "SELECT " + String.join(", ", selectBody) +
-                " FROM " +
-                objectsType.getSimpleName() +
-                " WHERE " + objectsType.getSimpleName() + "." +
-                field.getAnnotation(OneToMany.class).mappedBy() + "=" + entityId;
+            var cachePut = cachePutFor(relation.getElementType());
+            try (var resultSet = pstmt.executeQuery()) {
+                while (resultSet.next()) {
+                    var child = convertResultSetRowToJavaObject(context, relation.getElementType(), resultSet, cachePut);
+                    childrenByParentId.computeIfAbsent(resultSet.getLong(parentIdColumn), id -> new ArrayList<>())
+                            .add(child);
+                }
+            }
+        }
+        return childrenByParentId;
     }
 
-    private <T> String prepareSelectSqlStatementForGettingOneToManyObject(
-            T entity,
-            Field field,
-            Class<?> oneToManyObjectType) throws IllegalAccessException {
+    private Map<Long, Object> fetchManyToOneRelation(
+            PersistenceContext context,
+            EntityMetadata metadata,
+            ManyToOneMetadata relation,
+            List<Long> ownerIds) throws SQLException {
+
+        var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+        var ownerIdColumn = targetMetadata.getSelectProperties().size() + 1;
+        var targetsByOwnerId = new HashMap<Long, Object>();
+
+        for (var from = 0; from < ownerIds.size(); from += MAX_IN_CLAUSE_SIZE) {
+            var chunk = ownerIds.subList(from, Math.min(from + MAX_IN_CLAUSE_SIZE, ownerIds.size()));
+            var parameters = StatementKey.inClauseSize(chunk.size());
+            var pstmt = statements().prepare(
+                    StatementKey.of(metadata.getEntityClass(), Operation.SELECT_MANY_TO_ONE,
+                            relation.getField().getName() + ":" + parameters),
+                    () -> prepareSelectSqlStatementForGettingOneToManyObject(metadata, relation, parameters)
+            );
+            bindInClause(pstmt, chunk, parameters);
+
+            try (var resultSet = pstmt.executeQuery()) {
+                while (resultSet.next()) {
+                    var target = hydrate(context, targetMetadata, resultSet, 1);
+                    targetsByOwnerId.put(resultSet.getLong(ownerIdColumn), target);
+                }
+            }
+        }
+        return targetsByOwnerId;
+    }
 
-        Field entityIdField = getEntityIdField(entity.getClass());
-        entityIdField.setAccessible(true);
+    /**
+     * Rounds the number of ids up to a power of two, so that only a handful of distinct
+     * {@code IN} statements per relation end up in the statement cache.
+     */
+    private static void bindInClause(PreparedStatement statement, List<Long> ids, int parameters)
+            throws SQLException {
+        for (var i = 0; i < parameters; i++) {
+            statement.setLong(i + 1, ids.get(Math.min(i, ids.size() - 1)));
+        }
+    }
 
-        List<String> selectBody = getSelectBodyForDbRequest(oneToManyObjectType);
-        return "SELECT " + String.join(", ", selectBody) +
-                " FROM " +
-                entity.getClass().getSimpleName() + " INNER JOIN " +
-                oneToManyObjectType.getSimpleName() + " ON " +
-                entity.getClass().getSimpleName() +
-                "." + field.getAnnotation(ManyToOne.class).value() + "=" +
-                oneToManyObjectType.getSimpleName() +
-                "." + getEntityIdField(oneToManyObjectType).getName() +
-                " WHERE " + entity.getClass().getSimpleName() + "." +
-                entityIdField.getName() + "=" + entityIdField.get(entity);
+    private static String inClausePlaceholders(int parameters) {
+        return String.join(", ", Collections.nCopies(parameters, "?"));
     }
 
-    private Object convertResultSetRowToJavaObject(Class<?> objectType, ResultSet resultSet) {
-        try {
-            Object newInstance = Class.forName(objectType.getName())
-                    .getConstructor()
-                    .newInstance();
+    private String prepareSelectStatementForGettingListOfManyToOneObjects(
+            EntityMetadata objectsMetadata,
+            OneToManyMetadata relation,
+            int parameters) {
 
-            for (var field : newInstance.getClass().getDeclaredFields()) {
-                if (field.isAnnotationPresent(Column.class) || field.isAnnotationPresent(Id.class)) {
-                    field.setAccessible(true);
-                    Object columnValue = resultSet.getObject(field.getName());
+        var mappedByColumn = objectsMetadata.getTableName() + "." + relation.getMappedBy();
+        return "SELECT " + prepareSelectColumnsWithJoins(objectsMetadata) + ", " + mappedByColumn +
+                " FROM " + prepareFromClauseWithJoins(objectsMetadata) +
+                " WHERE " + mappedByColumn + " IN (" + inClausePlaceholders(parameters) + ")";
+    }
 
-                    if (columnValue instanceof Date) {
-                        columnValue = ((Date) columnValue).toLocalDate();
-                    }
+    private String prepareSelectSqlStatementForGettingOneToManyObject(
+            EntityMetadata metadata,
+            ManyToOneMetadata relation,
+            int parameters) {
+
+        var oneToManyObjectMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+        var ownerIdColumn = metadata.getTableName() + "." + metadata.getIdField().getName();
+        return "SELECT " + oneToManyObjectMetadata.getSelectColumns() + ", " + ownerIdColumn +
+                " FROM " +
+                metadata.getTableName() + " INNER JOIN " +
+                oneToManyObjectMetadata.getTableName() + " ON " +
+                metadata.getTableName() +
+                "." + relation.getJoinColumn() + "=" +
+                oneToManyObjectMetadata.getTableName() +
+                "." + oneToManyObjectMetadata.getIdField().getName() +
+                " WHERE " + ownerIdColumn + " IN (" + inClausePlaceholders(parameters) + ")";
+    }
+
+    /**
+     * Reads an entity and its {@link FetchType#JOIN} relations from a row selected with
+     * {@link #prepareSelectSqlStatement(EntityMetadata)}. The row is put in the second-level
+     * cache through {@code cachePut}, if any, unless the entity was already in the identity
+     * map, whose instance may hold changes that have not been written yet.
+     */
+    private Object convertResultSetRowToJavaObject(
+            PersistenceContext context,
+            Class<?> objectType,
+            ResultSet resultSet,
+            CachePut cachePut) {
+        var metadata = EntityMetadataRegistry.forClass(objectType);
+        var loaded = cachePut != null && context.get(objectType, readId(metadata, resultSet, 1)) != null;
+        var entity = hydrate(context, metadata, resultSet, 1);
+        if (cachePut != null && !loaded) {
+            cachePut.putState(metadata.getId(entity), readState(metadata, resultSet));
+        }
 
-                    field.set(newInstance, columnValue);
+        var columnIndex = 1 + metadata.getSelectProperties().size();
+        for (var relation : metadata.getJoinFetchRelations()) {
+            var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+            var target = hydrate(context, targetMetadata, resultSet, columnIndex);
+            if (target != null) {
+                relation.getProperty().set(entity, target);
+            }
+            columnIndex += targetMetadata.getSelectProperties().size();
+        }
+        return entity;
+    }
+
+    /**
+     * Reads the selected columns of one entity, starting at the given column index. An
+     * instance already loaded for the same row is returned from the identity map instead,
+     * and {@code null} is returned when the id column is {@code NULL}.
+     */
+    private Object hydrate(PersistenceContext context, EntityMetadata metadata, ResultSet resultSet, int firstColumn) {
+        try {
+            var id = readId(metadata, resultSet, firstColumn);
+            if (id == null) {
+                return null;
+            }
+            var cached = context.get(metadata.getEntityClass(), id);
+            if (cached != null) {
+                return cached;
+            }
+            Object newInstance = metadata.newInstance();
+
+            var mapper = metadata.getMapper();
+            if (mapper != null) {
+                mapper.hydrate(newInstance, resultSet, firstColumn);
+            } else {
+                var columnIndex = firstColumn;
+                for (var property : metadata.getSelectProperties()) {
+                    property.set(newInstance, property.read(resultSet, columnIndex++));
                 }
             }
+            context.put(metadata.getEntityClass(), id, newInstance);
+            context.putSnapshot(newInstance, metadata.snapshot(newInstance));
 
             return newInstance;
 
-        } catch (NoSuchMethodException e) {
-            throw new ORMException("Failed to find such constructor", e);
-        } catch (InvocationTargetException e) {
-            throw new ORMException("Failed to invoke constructor or class method", e);
-        } catch (InstantiationException e) {
-            throw new ORMException("Failed to create class using newInstance method", e);
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
         } catch (SQLException e) {
             throw new ORMException(STATEMENT_EXCEPTION, e);
-        } catch (ClassNotFoundException e) {
-            throw new ORMException("Class was not found.", e);
         }
     }
 
-    private List<String> getSelectBodyForDbRequest(Class<?> objectType) {
-        var objectFields = new ArrayList<String>();
-        for (Field objectField : objectType.getDeclaredFields()) {
-            if (objectField.isAnnotationPresent(Column.class)
-                    || objectField.isAnnotationPresent(Id.class)) {
+    /**
+     * Reads the id of the entity whose selected columns start at the given column index.
+     */
+    private static Long readId(EntityMetadata metadata, ResultSet resultSet, int firstColumn) {
+        try {
+            var id = resultSet.getLong(firstColumn + metadata.getIdSelectIndex());
+            return resultSet.wasNull() ? null : id;
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+    }
 
-                objectFields.add(objectField.getDeclaringClass().getSimpleName() + "." +
-                        objectField.getName());
+    /**
+     * Reads the state cached in the second-level cache from a row selected with
+     * {@link #prepareSelectSqlStatement(EntityMetadata)}: the values of the selected
+     * properties followed by the ids of the {@link FetchType#JOIN} relations.
+     */
+    private static Object[] readState(EntityMetadata metadata, ResultSet resultSet) {
+        var properties = metadata.getSelectProperties().size();
+        var state = new Object[properties + metadata.getJoinFetchRelations().size()];
+        try {
+            var selectProperties = metadata.getSelectProperties();
+            for (var i = 0; i < properties; i++) {
+                state[i] = selectProperties.get(i).read(resultSet, i + 1);
+            }
+            var columnIndex = 1 + properties;
+            var stateIndex = properties;
+            for (var relation : metadata.getJoinFetchRelations()) {
+                var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+                var targetId = resultSet.getLong(columnIndex + targetMetadata.getIdSelectIndex());
+                state[stateIndex++] = resultSet.wasNull() ? null : targetId;
+                columnIndex += targetMetadata.getSelectProperties().size();
             }
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+        return state;
+    }
+
+    /**
+     * Creates an entity from a state read by {@link #readState(EntityMetadata, ResultSet)}
+     * and resolves its {@link FetchType#JOIN} relations by id.
+     */
+    private Object hydrateFromState(PersistenceContext context, EntityMetadata metadata, Long id, Object[] state) {
+        var entity = metadata.newInstance();
+        var properties = metadata.getSelectProperties();
+        for (var i = 0; i < properties.size(); i++) {
+            properties.get(i).set(entity, state[i]);
+        }
+        context.put(metadata.getEntityClass(), id, entity);
+        context.putSnapshot(entity, metadata.snapshot(entity));
+
+        var stateIndex = properties.size();
+        for (var relation : metadata.getJoinFetchRelations()) {
+            var targetId = (Long) state[stateIndex++];
+            if (targetId != null) {
+                var target = loadById(context, EntityMetadataRegistry.forClass(relation.getTargetType()), targetId);
+                relation.getProperty().set(entity, target);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Returns the second-level cache if the class is cached in it, {@code null} otherwise.
+     * The field is read once, so that an operation keeps using the same cache even if it is
+     * detached concurrently.
+     */
+    private SecondLevelCache secondLevelCacheFor(Class<?> clazz) {
+        var cache = secondLevelCache;
+        return cache != null && cache.isCached(clazz) ? cache : null;
+    }
+
+    /**
+     * Returns where to put the rows of the class about to be selected in the second-level
+     * cache, or {@code null} if they are not cached. Must be called before the select runs.
+     * Rows read while the thread has an active transaction are never cached: they may hold
+     * writes that are not committed yet, and the cache is shared with every other thread.
+     */
+    private CachePut cachePutFor(Class<?> clazz) {
+        if (isTransactionActive()) {
+            return null;
+        }
+        var cache = secondLevelCacheFor(clazz);
+        return cache == null ? null : new CachePut(cache, clazz, cache.getGeneration(clazz));
+    }
+
+    /**
+     * Second-level cache region the rows of one select are put in, with the eviction
+     * generation read before the select ran. Rows are only cached while no entity of the
+     * class has been evicted since, as they may predate a concurrent write.
+     */
+    private static final class CachePut {
+        private final SecondLevelCache cache;
+        private final Class<?> entityClass;
+        private final long generation;
+
+        CachePut(SecondLevelCache cache, Class<?> entityClass, long generation) {
+            this.cache = cache;
+            this.entityClass = entityClass;
+            this.generation = generation;
+        }
+
+        void putState(Long id, Object[] state) {
+            cache.putState(entityClass, id, state, generation);
+        }
+
+        void putAllIds(List<Long> ids) {
+            cache.putAllIds(entityClass, ids, generation);
         }
-        return objectFields;
     }
 
-    private Class<?> getTypeOfListObjects(Field field) {
-        var listOfObjects = (ParameterizedType) field.getGenericType();
-        return (Class<?>) listOfObjects.getActualTypeArguments()[0];
+    /**
+     * Evicts the entity from the second-level cache. Within a transaction the eviction is
+     * repeated on commit, as another thread may have cached the committed row again meanwhile.
+     */
+    private void invalidateSecondLevelCache(EntityMetadata metadata, Long id) {
+        var cache = secondLevelCache;
+        if (cache != null) {
+            cache.evict(metadata.getEntityClass(), id);
+            var transaction = session().getTransaction();
+            if (transaction != null) {
+                transaction.recordEviction(metadata.getEntityClass(), id);
+            }
+        }
     }
 
     public void print(Class<?> clazz) {
         if (!clazz.isAnnotationPresent(Entity.class)) {
             throw new IllegalArgumentException();
         }
-        try (var statement = connection.createStatement()) {
-            var sql = prepareSelectSqlStatementForPrinting(clazz);
-            try (var resultSet = statement.executeQuery(sql)) {
-                var rows = new ArrayList<List<String>>();
-                //adding each fields name to the Header Joiner
-                var namesOfFields = Arrays.stream(clazz.getDeclaredFields())
-                        .filter(field -> !field.isAnnotationPresent(OneToMany.class))
-                        .map(Field::getName)
-                        .collect(Collectors.toList());
-                rows.add(namesOfFields);
-                while (resultSet.next()) {
-                    var row = new ArrayList<String>();
-                    for (var i = 1; i <= namesOfFields.size(); i++) {
-                        row.add(resultSet.getString(i));
+        var metadata = EntityMetadataRegistry.forClass(clazz);
+        try (var ignored = acquire()) {
+            try (var statement = connection().createStatement()) {
+                var sql = prepareSelectSqlStatementForPrinting(metadata);
+                try (var resultSet = statement.executeQuery(sql)) {
+                    var rows = new ArrayList<List<String>>();
+                    //adding each fields name to the Header Joiner
+                    var namesOfFields = metadata.getDeclaredFields().stream()
+                            .filter(field -> !field.isAnnotationPresent(OneToMany.class))
+                            .map(Field::getName)
+                            .collect(Collectors.toList());
+                    rows.add(namesOfFields);
+                    while (resultSet.next()) {
+                        var row = new ArrayList<String>();
+                        for (var i = 1; i <= namesOfFields.size(); i++) {
+                            row.add(resultSet.getString(i));
+                        }
+                        rows.add(row);
                     }
-                    rows.add(row);
+                    System.out.println(generateOutputString(rows));
+                    log.info("Table {} has been printed.", clazz.getSimpleName());
+                } catch (SQLException throwable) {
+                    throw new ORMException(STATEMENT_EXCEPTION, throwable);
                 }
-                System.out.println(generateOutputString(rows));
-                log.info("Table {} has been printed.", clazz.getSimpleName());
             } catch (SQLException throwable) {
                 throw new ORMException(STATEMENT_EXCEPTION, throwable);
             }
-        } catch (SQLException throwable) {
-            throw new ORMException(STATEMENT_EXCEPTION, throwable);
         }
     }
 
     public <T> void delete(T entity) {
-        if (isEntityPresentInDb(entity)) {
-            var sql = prepareSqlStatementForDeleting(entity);
-            try (var prepareStatement = connection.prepareStatement(sql)) {
-                prepareStatement.executeUpdate();
+        var metadata = EntityMetadataRegistry.forClass(entity.getClass());
+        var unitOfWork = session().getUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.scheduleDelete(metadata, entity);
+            return;
+        }
 
-                log.info("{} has been deleted.", entity.getClass().getSimpleName());
-            } catch (SQLException e) {
-                throw new ORMException(STATEMENT_EXCEPTION, e);
-            }
-        } else {
+        int deletedRows;
+        try (var ignored = acquire()) {
+            var statement = statements().prepare(
+                    StatementKey.of(metadata.getEntityClass(), Operation.DELETE),
+                    metadata::getDeleteSql
+            );
+            metadata.getIdProperty().bind(statement, 1, entity);
+            deletedRows = statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new ORMException(STATEMENT_EXCEPTION, e);
+        }
+        if (deletedRows == 0) {
             throw new ORMException("There is no such entity in the database.", null);
         }
-    }
-
-    private <T> String prepareInsertSqlStatementForSaving(T entity) {
-        var fieldValues = new ArrayList<String>();
+        persistenceContext().evict(metadata.getEntityClass(), metadata.getId(entity));
+        invalidateSecondLevelCache(metadata, metadata.getId(entity));
 
-        getEntityFieldsExceptId(entity.getClass())
-                .filter(field ->
-                        field.isAnnotationPresent(Column.class) || field.isAnnotationPresent(ManyToOne.class))
-                .forEach(field -> {
-                    try {
-                        field.setAccessible(true);
-
-                        if (field.get(entity) == null) {
-                            fieldValues.add("NULL");
-                        } else if (field.isAnnotationPresent(ManyToOne.class)) {
-                            Object annotatedEntity = field.get(entity);
-                            fieldValues.add("'" + getEntityId(annotatedEntity) + "'");
-                        } else {
-                            fieldValues.add("'" + field.get(entity) + "'");
-                        }
-
-                    } catch (IllegalAccessException e) {
-                        throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
-                    }
-                });
-
-        return "insert into " +
-                entity.getClass().getSimpleName() +
-                " values(" + "DEFAULT, " +
-                String.join(", ", fieldValues) +
-                ")";
-    }
-
-    private <T> String prepareUpdateSqlStatementForMerging(T entity, Field entityId) {
-        List<String> fields = new ArrayList<>();
-
-        getEntityFieldsExceptId(entity.getClass())
-                .filter(field -> field.isAnnotationPresent(Column.class))
-                .forEach(field -> {
-                    try {
-                        field.setAccessible(true);
-                        fields.add(field.getName() + " = " + "'" + field.get(entity) + "'");
-                    } catch (IllegalAccessException e) {
-                        throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
-                    }
-                });
-
-        return "UPDATE " +
-                entity.getClass().getSimpleName() +
-                " SET " + String.join(",", fields) +
-                " WHERE " + entityId.getName() + " = ?";
+        log.info("{} has been deleted.", entity.getClass().getSimpleName());
     }
 
-    private String prepareSelectSqlStatementForPrinting(Class<?> clazz) {
-        return "SELECT * FROM " +
-                clazz.getSimpleName();
+    private <T> void bindInsertParameters(PreparedStatement statement, EntityMetadata metadata, T entity)
+            throws SQLException {
+        var mapper = metadata.getMapper();
+        if (mapper != null) {
+            mapper.bindInsert(statement, entity);
+            return;
+        }
+        var index = 1;
+        for (var property : metadata.getInsertProperties()) {
+            property.bind(statement, index++, entity);
+        }
     }
 
-    private <T> String prepareSqlStatementForDeleting(T entity) {
-        Field entityIdField = getEntityIdField(entity.getClass());
-
-        var sql = new StringBuilder("DELETE FROM ");
-        entityIdField.setAccessible(true);
-        try {
-            sql.append(entity.getClass().getSimpleName())
-                    .append(" WHERE ")
-                    .append(entityIdField.getName())
-                    .append(" = '")
-                    .append(entityIdField.get(entity))
-                    .append("'");
-
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+    private <T> void bindUpdateParameters(PreparedStatement statement, EntityMetadata metadata, T entity)
+            throws SQLException {
+        var index = 1;
+        for (var property : metadata.getColumns()) {
+            property.bind(statement, index++, entity);
         }
-        return sql.toString();
+        metadata.getIdProperty().bind(statement, index, entity);
     }
 
-
-    private <T> boolean isEntityPresentInDb(T entity) {
-        Field entityIdField = getEntityIdField(entity.getClass());
-
-        var sql = new StringBuilder();
-        entityIdField.setAccessible(true);
-        try {
-            sql.append("SELECT EXISTS(SELECT * FROM ")
-                    .append(entity.getClass().getSimpleName())
-                    .append(" WHERE ")
-                    .append(entityIdField.getName())
-                    .append(" = ")
-                    .append(entityIdField.get(entity))
-                    .append(")");
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
-        }
-
-        boolean isEntityPresentInDb;
-        try (
-                var stmt = connection.createStatement();
-                var rs = stmt.executeQuery(sql.toString())
-        ) {
-            rs.next();
-            isEntityPresentInDb = rs.getBoolean(1);
-        } catch (
-                SQLException e) {
-            throw new ORMException(STATEMENT_EXCEPTION, e);
+    /**
+     * Prepares the {@code UPDATE} of the changed columns, or of all columns if
+     * {@code changedColumns} is {@code null}.
+     */
+    private PreparedStatement prepareUpdateStatement(EntityMetadata metadata, BitSet changedColumns)
+            throws SQLException {
+        if (changedColumns == null) {
+            return statements().prepare(
+                    StatementKey.of(metadata.getEntityClass(), Operation.UPDATE),
+                    metadata::getUpdateSql
+            );
         }
-        return isEntityPresentInDb;
+        return statements().prepare(
+                StatementKey.of(metadata.getEntityClass(), Operation.UPDATE, changedColumns.toString()),
+                () -> metadata.getUpdateSql(changedColumns)
+        );
     }
 
-    private Field getEntityIdField(Class<?> clazz) {
-        return Arrays.stream(clazz.getDeclaredFields())
-                .filter(field -> field.isAnnotationPresent(Id.class))
-                .findFirst().orElseThrow(() ->
-                        new ORMException(NO_FIELD_WITH_ID_ANNOTATION, new NoSuchFieldException()));
+    private <T> void bindUpdateParameters(
+            PreparedStatement statement,
+            EntityMetadata metadata,
+            T entity,
+            BitSet changedColumns) throws SQLException {
+        if (changedColumns == null) {
+            bindUpdateParameters(statement, metadata, entity);
+            return;
+        }
+        var index = 1;
+        for (var i = changedColumns.nextSetBit(0); i >= 0; i = changedColumns.nextSetBit(i + 1)) {
+            metadata.getColumns().get(i).bind(statement, index++, entity);
+        }
+        metadata.getIdProperty().bind(statement, index, entity);
     }
 
-    private Long getEntityId(Object entity) {
-        try {
-            Field entityIdField = getEntityIdField(entity.getClass());
-            entityIdField.setAccessible(true);
+    private PreparedStatement prepareUpsertStatement(EntityMetadata metadata) throws SQLException {
+        return statements().prepare(
+                StatementKey.of(metadata.getEntityClass(), Operation.UPSERT),
+                metadata::getUpsertSql
+        );
+    }
 
-            return (Long) entityIdField.get(entity);
-        } catch (IllegalAccessException e) {
-            throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+    private <T> void bindUpsertParameters(PreparedStatement statement, EntityMetadata metadata, T entity)
+            throws SQLException {
+        metadata.getIdProperty().bind(statement, 1, entity);
+        var index = 2;
+        for (var property : metadata.getInsertProperties()) {
+            property.bind(statement, index++, entity);
         }
     }
 
-    private Stream<Field> getEntityFieldsExceptId(Class<?> clazz) {
-        return Arrays.stream(clazz.getDeclaredFields())
-                .filter(field -> !field.isAnnotationPresent(Id.class));
+    private String prepareSelectSqlStatementForPrinting(EntityMetadata metadata) {
+        return "SELECT * FROM " +
+                metadata.getTableName();
     }
 
     private Properties readProperties() throws IOException {
@@ -591,11 +2048,15 @@ public class ORMManager {
         return properties;
     }
 
+    /**
+     * Closes the connection given to the constructor, or the pool created from
+     * {@code db.properties}. A {@link DataSource} given to the constructor is left open.
+     */
     public void closeConnection() {
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            throw new ORMException("SQLException occurred while closing the connection.", e);
+        if (dataSource == null) {
+            pinnedSession.getLease().closeConnection();
+        } else if (ownedPool != null) {
+            ownedPool.close();
         }
     }
 
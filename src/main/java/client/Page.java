@@ -0,0 +1,38 @@
+package client;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of entities returned by {@link ORMManager#page(Class, Long, int)}, ordered by id.
+ *
+ * @param <T> type of the entities
+ */
+@Getter
+public final class Page<T> {
+    private final List<T> items;
+    /** Id of the last entity of the page, to be passed as {@code afterId} for the next page. */
+    private final Long lastId;
+    @Getter(AccessLevel.NONE)
+    private final boolean hasMore;
+
+    Page(List<T> items, Long lastId, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.lastId = lastId;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Whether at least one more entity follows this page.
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
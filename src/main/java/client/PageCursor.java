@@ -0,0 +1,52 @@
+package client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a table page by page using keyset pagination. Every page is read with
+ * {@code WHERE id > ? ORDER BY id LIMIT ?} starting after the last id of the previous page,
+ * so reading a page costs the same regardless of how far into the table it is.
+ * The cursor is not thread-safe.
+ *
+ * @param <T> type of the entities
+ */
+public class PageCursor<T> implements Iterator<Page<T>> {
+    private final ORMManager ormManager;
+    private final Class<T> clazz;
+    private final int limit;
+    private Long lastId;
+    private boolean hasMore = true;
+
+    PageCursor(ORMManager ormManager, Class<T> clazz, Long afterId, int limit) {
+        this.ormManager = ormManager;
+        this.clazz = clazz;
+        this.lastId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * Id of the last entity returned so far, usable to resume the iteration later.
+     */
+    public Long getLastId() {
+        return lastId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasMore;
+    }
+
+    @Override
+    public Page<T> next() {
+        if (!hasMore) {
+            throw new NoSuchElementException();
+        }
+        var page = ormManager.page(clazz, lastId, limit);
+        hasMore = page.hasMore();
+        if (!page.isEmpty()) {
+            lastId = page.getLastId();
+        }
+        return page;
+    }
+}
@@ -0,0 +1,18 @@
+package client;
+
+/**
+ * What {@link ORMManager#prepareRepositoryFor(Class)} does with the table of an entity.
+ */
+public enum SchemaMode {
+    /** Drops and recreates the table together with its indexes; existing rows are lost. */
+    CREATE,
+    /** Fails with an {@link exceptions.ORMException} if the table or some of its columns are missing. */
+    VALIDATE,
+    /**
+     * Creates the table if it is missing, otherwise adds the missing columns and indexes.
+     * Existing columns are never altered or dropped.
+     */
+    UPDATE,
+    /** Leaves the schema untouched. */
+    NONE
+}
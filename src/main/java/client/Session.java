@@ -0,0 +1,58 @@
+package client;
+
+import cache.PersistenceContext;
+
+/**
+ * State of one caller of an {@link ORMManager}: its identity map, the connection lease
+ * of the operation it is running and its open {@link UnitOfWork} and transaction, if any.
+ * A manager backed by a {@link javax.sql.DataSource} keeps one session per thread, so
+ * threads never share a connection or loaded instances, and its identity map only lasts
+ * as long as the operation, unit of work or transaction running in it, see
+ * {@link #clearIfIdle()}.
+ */
+final class Session {
+    private final PersistenceContext persistenceContext = new PersistenceContext();
+    private ConnectionLease lease;
+    private UnitOfWork unitOfWork;
+    private Transaction transaction;
+
+    PersistenceContext getPersistenceContext() {
+        return persistenceContext;
+    }
+
+    ConnectionLease getLease() {
+        return lease;
+    }
+
+    void setLease(ConnectionLease lease) {
+        this.lease = lease;
+    }
+
+    UnitOfWork getUnitOfWork() {
+        return unitOfWork;
+    }
+
+    void setUnitOfWork(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
+    Transaction getTransaction() {
+        return transaction;
+    }
+
+    void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    /**
+     * Clears the identity map once no operation, unit of work or transaction is running,
+     * so that the next operation sees the writes of other threads and the map does not grow
+     * for the whole life of a pooled thread. The lease of a pinned session is never released,
+     * so its identity map is kept until it is cleared explicitly.
+     */
+    void clearIfIdle() {
+        if (lease == null && unitOfWork == null && transaction == null) {
+            persistenceContext.clear();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package client;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transaction of a {@link Session}: the lease that keeps its connection borrowed until the
+ * transaction ends, the connection settings to restore afterwards and the second-level cache
+ * entries to evict again on commit.
+ */
+final class Transaction {
+    private final ConnectionLease lease;
+    private final boolean previousAutoCommit;
+    private final int previousIsolationLevel;
+    private final Map<Class<?>, Set<Long>> evictions = new HashMap<>();
+
+    Transaction(ConnectionLease lease, boolean previousAutoCommit, int previousIsolationLevel) {
+        this.lease = lease;
+        this.previousAutoCommit = previousAutoCommit;
+        this.previousIsolationLevel = previousIsolationLevel;
+    }
+
+    ConnectionLease getLease() {
+        return lease;
+    }
+
+    boolean isPreviousAutoCommit() {
+        return previousAutoCommit;
+    }
+
+    int getPreviousIsolationLevel() {
+        return previousIsolationLevel;
+    }
+
+    void recordEviction(Class<?> entityClass, Long id) {
+        evictions.computeIfAbsent(entityClass, c -> new HashSet<>()).add(id);
+    }
+
+    Map<Class<?>, Set<Long>> getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,227 @@
+package client;
+
+import lombok.extern.slf4j.Slf4j;
+import metadata.EntityMetadata;
+import metadata.EntityMetadataRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes queued by an {@link ORMManager} session instead of being executed immediately.
+ * While a unit of work is open, {@code save}, {@code saveAll}, {@code saveOrUpdate},
+ * {@code merge} and {@code delete} of the session only record the entity; {@link #flush()}
+ * writes everything in one database transaction using one JDBC batch per table and
+ * operation.
+ * <p>
+ * Inserts and upserts are flushed with referenced tables first and deletes with referencing
+ * tables first, so the {@link annotations.ManyToOne} foreign keys are never violated in
+ * between. Updates are dirty-checked when they are flushed, so merging an entity several
+ * times costs at most one statement. Ids of saved entities are assigned by the flush.
+ * <p>
+ * A unit of work belongs to the thread that opened it and is not thread-safe.
+ */
+@Slf4j
+public class UnitOfWork implements AutoCloseable {
+    private final ORMManager ormManager;
+    private final Session session;
+    private final Map<Class<?>, List<Object>> inserts = new LinkedHashMap<>();
+    private final Map<Class<?>, List<Object>> upserts = new LinkedHashMap<>();
+    private final Map<Class<?>, Set<Object>> updates = new LinkedHashMap<>();
+    private final Map<Class<?>, Set<Object>> deletes = new LinkedHashMap<>();
+    /** Entities queued for insert, which must not be updated or deleted separately. */
+    private final Set<Object> inserted = identitySet();
+    private boolean closed;
+
+    UnitOfWork(ORMManager ormManager, Session session) {
+        this.ormManager = ormManager;
+        this.session = session;
+    }
+
+    void scheduleInsert(EntityMetadata metadata, Object entity) {
+        if (inserted.add(entity)) {
+            inserts.computeIfAbsent(metadata.getEntityClass(), key -> new ArrayList<>()).add(entity);
+        }
+    }
+
+    void scheduleUpsert(EntityMetadata metadata, Object entity) {
+        upserts.computeIfAbsent(metadata.getEntityClass(), key -> new ArrayList<>()).add(entity);
+    }
+
+    void scheduleUpdate(EntityMetadata metadata, Object entity) {
+        if (!inserted.contains(entity)) {
+            updates.computeIfAbsent(metadata.getEntityClass(), key -> identitySet()).add(entity);
+        }
+    }
+
+    /**
+     * Queues the delete of the entity. Deleting an entity whose insert has not been flushed
+     * yet cancels the insert.
+     *
+     * @throws IllegalStateException if the entity's insert is pending and another queued
+     *                               write references it, which would be flushed with a
+     *                               {@code NULL} foreign key
+     */
+    void scheduleDelete(EntityMetadata metadata, Object entity) {
+        var clazz = metadata.getEntityClass();
+        if (inserted.contains(entity)) {
+            var dependant = findQueuedReference(clazz, entity);
+            if (dependant != null) {
+                throw new IllegalStateException("Cannot cancel the pending insert of " + clazz.getSimpleName() +
+                        ", a queued " + dependant.getClass().getSimpleName() + " references it.");
+            }
+            inserted.remove(entity);
+            inserts.get(clazz).removeIf(queued -> queued == entity);
+            return;
+        }
+        var queuedUpdates = updates.get(clazz);
+        if (queuedUpdates != null) {
+            queuedUpdates.remove(entity);
+        }
+        deletes.computeIfAbsent(clazz, key -> identitySet()).add(entity);
+    }
+
+    /**
+     * Returns a queued insert, upsert or update whose {@link annotations.ManyToOne} field
+     * refers to the given instance, or {@code null} if there is none.
+     */
+    private Object findQueuedReference(Class<?> targetClass, Object target) {
+        var queued = new LinkedHashMap<Class<?>, List<Object>>();
+        inserts.forEach((clazz, entities) -> queued.computeIfAbsent(clazz, key -> new ArrayList<>()).addAll(entities));
+        upserts.forEach((clazz, entities) -> queued.computeIfAbsent(clazz, key -> new ArrayList<>()).addAll(entities));
+        updates.forEach((clazz, entities) -> queued.computeIfAbsent(clazz, key -> new ArrayList<>()).addAll(entities));
+        for (var entry : queued.entrySet()) {
+            for (var relation : EntityMetadataRegistry.forClass(entry.getKey()).getManyToOneRelations()) {
+                if (relation.getTargetType() != targetClass) {
+                    continue;
+                }
+                for (var entity : entry.getValue()) {
+                    if (relation.getProperty().get(entity) == target) {
+                        return entity;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    Map<Class<?>, List<Object>> getInserts() {
+        return inserts;
+    }
+
+    Map<Class<?>, List<Object>> getUpserts() {
+        return upserts;
+    }
+
+    Map<Class<?>, Set<Object>> getUpdates() {
+        return updates;
+    }
+
+    Map<Class<?>, Set<Object>> getDeletes() {
+        return deletes;
+    }
+
+    /**
+     * Returns the classes with queued writes, every class after the classes it references
+     * with {@link annotations.ManyToOne}. Classes referencing each other keep the order in
+     * which their first write was queued.
+     */
+    List<Class<?>> flushOrder() {
+        var classes = new LinkedHashSet<Class<?>>();
+        classes.addAll(inserts.keySet());
+        classes.addAll(upserts.keySet());
+        classes.addAll(updates.keySet());
+        classes.addAll(deletes.keySet());
+
+        var ordered = new ArrayList<Class<?>>(classes.size());
+        var visited = new HashSet<Class<?>>();
+        for (var clazz : classes) {
+            visit(clazz, classes, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(Class<?> clazz, Set<Class<?>> classes, Set<Class<?>> visited, List<Class<?>> ordered) {
+        if (!visited.add(clazz)) {
+            return;
+        }
+        for (var relation : EntityMetadataRegistry.forClass(clazz).getManyToOneRelations()) {
+            if (classes.contains(relation.getTargetType())) {
+                visit(relation.getTargetType(), classes, visited, ordered);
+            }
+        }
+        ordered.add(clazz);
+    }
+
+    /**
+     * Number of queued writes.
+     */
+    public int size() {
+        return inserted.size() +
+                upserts.values().stream().mapToInt(List::size).sum() +
+                updates.values().stream().mapToInt(Set::size).sum() +
+                deletes.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Writes all queued changes in one database transaction, or in the active transaction of
+     * the thread, and empties the queue. The unit of work stays open. If the flush fails the
+     * queue is kept.
+     */
+    public void flush() {
+        if (closed) {
+            throw new IllegalStateException("Unit of work is closed.");
+        }
+        ormManager.flush(this);
+        clear();
+    }
+
+    /**
+     * Flushes the queued changes and closes the unit of work.
+     */
+    public void commit() {
+        flush();
+        close();
+    }
+
+    /**
+     * Closes the unit of work, discarding the changes that have not been flushed. Writes of
+     * the session are executed immediately again afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (size() > 0) {
+            log.warn("Unit of work closed with {} unflushed writes, they are discarded.", size());
+        }
+        clear();
+        session.setUnitOfWork(null);
+        session.clearIfIdle();
+    }
+
+    private void clear() {
+        inserts.clear();
+        upserts.clear();
+        updates.clear();
+        deletes.clear();
+        inserted.clear();
+    }
+
+    private static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
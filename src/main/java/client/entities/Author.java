@@ -2,6 +2,7 @@ package client.entities;
 
 import annotations.Column;
 import annotations.Entity;
+import annotations.FetchType;
 import annotations.Id;
 import annotations.OneToMany;
 import lombok.AllArgsConstructor;
@@ -28,7 +29,7 @@ public class Author {
 
     @Getter
     @Setter
-    @OneToMany(mappedBy = "author_id")
+    @OneToMany(mappedBy = "author_id", fetch = FetchType.LAZY)
     private List<Book> books = new ArrayList<>();
 
     public Author(Long id, String name) {
@@ -2,7 +2,9 @@ package client.entities;
 
 import annotations.Column;
 import annotations.Entity;
+import annotations.FetchType;
 import annotations.Id;
+import annotations.Index;
 import annotations.ManyToOne;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -12,6 +14,7 @@ import lombok.Setter;
 import java.time.LocalDate;
 
 @Entity
+@Index(columns = {"genre", "dateOfWriting"})
 @AllArgsConstructor
 @NoArgsConstructor
 public class Book {
@@ -21,6 +24,7 @@ public class Book {
     private Long id;
 
     @Column
+    @Index
     @Getter
     @Setter
     private String name;
@@ -36,7 +40,7 @@ public class Book {
     private LocalDate dateOfWriting;
 
     @Getter @Setter
-    @ManyToOne("author_id")
+    @ManyToOne(value = "author_id", fetch = FetchType.JOIN)
     private Author author;
 
     public Book(Long id, String name, String genre, LocalDate dateOfWriting) {
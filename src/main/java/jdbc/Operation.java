@@ -0,0 +1,20 @@
+package jdbc;
+
+/**
+ * Kinds of statements generated by the ORM. Together with the entity class they identify
+ * a cached {@link java.sql.PreparedStatement}.
+ */
+public enum Operation {
+    INSERT,
+    UPDATE,
+    DELETE,
+    UPSERT,
+    SELECT_BY_ID,
+    EXISTS_BY_ID,
+    SELECT_ALL,
+    SELECT_PAGE,
+    SELECT_CRITERIA,
+    SELECT_PROJECTION,
+    SELECT_ONE_TO_MANY,
+    SELECT_MANY_TO_ONE
+}
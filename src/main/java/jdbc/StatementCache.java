@@ -0,0 +1,89 @@
+package jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of {@link PreparedStatement}s opened on a single connection.
+ * Statements returned by the cache stay open and must not be closed by the caller;
+ * they are closed when they are evicted or when the cache itself is closed.
+ * <p>
+ * A cache is bound to one connection and is not thread-safe.
+ */
+@Slf4j
+public class StatementCache implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 128;
+
+    private final Connection connection;
+    private final Map<StatementKey, PreparedStatement> statements;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(Connection connection, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Statement cache size must be positive.");
+        }
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the key, preparing it from the supplied SQL on a miss.
+     */
+    public PreparedStatement prepare(StatementKey key, Supplier<String> sql) throws SQLException {
+        return prepare(key, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns the cached statement for the key, preparing it from the supplied SQL on a miss.
+     *
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    public PreparedStatement prepare(StatementKey key, Supplier<String> sql, int autoGeneratedKeys)
+            throws SQLException {
+        var statement = statements.get(key);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql.get(), autoGeneratedKeys);
+            statements.put(key, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() {
+        statements.forEach(this::closeQuietly);
+        statements.clear();
+    }
+
+    private void closeQuietly(StatementKey key, PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close cached statement {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package jdbc;
+
+import java.util.Objects;
+
+/**
+ * Identifies a generated statement: the entity class, the operation and an optional
+ * variant (for example the relation field a select is generated for).
+ */
+public final class StatementKey {
+    private final Class<?> entityClass;
+    private final Operation operation;
+    private final Object variant;
+    private final int hash;
+
+    private StatementKey(Class<?> entityClass, Operation operation, Object variant) {
+        this.entityClass = entityClass;
+        this.operation = operation;
+        this.variant = variant;
+        this.hash = Objects.hash(entityClass, operation, variant);
+    }
+
+    public static StatementKey of(Class<?> entityClass, Operation operation) {
+        return new StatementKey(entityClass, operation, null);
+    }
+
+    public static StatementKey of(Class<?> entityClass, Operation operation, Object variant) {
+        return new StatementKey(entityClass, operation, variant);
+    }
+
+    /**
+     * Returns the number of parameters of an {@code IN} clause for the given number of
+     * values: the next power of two, so that lists of similar length share one statement.
+     * The missing values are filled in by repeating the last one.
+     */
+    public static int inClauseSize(int values) {
+        if (values == 0) {
+            return 0;
+        }
+        var size = Integer.highestOneBit(values);
+        return size == values ? size : size << 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StatementKey)) {
+            return false;
+        }
+        var that = (StatementKey) o;
+        return entityClass == that.entityClass
+                && operation == that.operation
+                && Objects.equals(variant, that.variant);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return entityClass.getSimpleName() + ":" + operation + (variant == null ? "" : ":" + variant);
+    }
+}
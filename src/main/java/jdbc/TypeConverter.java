@@ -0,0 +1,31 @@
+package jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts between a Java type and its column: the SQL type used when creating tables,
+ * the typed {@code getXxx} read of a result set column and the typed {@code setXxx} bind of
+ * a statement parameter. Converters are registered per class in {@link TypeConverters}.
+ *
+ * @param <T> the Java type
+ */
+public interface TypeConverter<T> {
+    /**
+     * SQL type of columns created for this type, or {@code null} if tables with such
+     * columns cannot be created.
+     */
+    String getSqlType();
+
+    /**
+     * Reads the column at the given index of the current row; {@code NULL} is read as
+     * {@code null}, except for primitive types.
+     */
+    T read(ResultSet resultSet, int index) throws SQLException;
+
+    /**
+     * Binds the value, possibly {@code null}, to the statement parameter at the given index.
+     */
+    void bind(PreparedStatement statement, int index, T value) throws SQLException;
+}
@@ -0,0 +1,178 @@
+package jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the {@link TypeConverter}s of the Java types supported by the ORM, keyed by
+ * class. Primitive types read with the plain typed getters, so {@code NULL} becomes zero
+ * or {@code false}; their wrappers read {@code NULL} as {@code null}.
+ * <p>
+ * Custom converters should be {@link #register(Class, TypeConverter) registered} before the
+ * entities using them are first used, because entity metadata keeps the converters of its
+ * properties.
+ */
+public final class TypeConverters {
+    private static final Map<Class<?>, TypeConverter<?>> CONVERTERS = new ConcurrentHashMap<>();
+
+    static {
+        register(String.class, converter("VARCHAR(255)", Types.VARCHAR,
+                ResultSet::getString, PreparedStatement::setString));
+        register(Character.class, converter("CHAR", Types.CHAR,
+                TypeConverters::readCharacter, (statement, index, value) -> statement.setString(index, value.toString())));
+        register(char.class, converter("CHAR", Types.CHAR,
+                (resultSet, index) -> {
+                    var value = readCharacter(resultSet, index);
+                    return value == null ? '\0' : value;
+                },
+                (statement, index, value) -> statement.setString(index, value.toString())));
+        register(Long.class, converter("BIGINT", Types.BIGINT,
+                (resultSet, index) -> {
+                    var value = resultSet.getLong(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setLong));
+        register(long.class, converter("BIGINT", Types.BIGINT, ResultSet::getLong, PreparedStatement::setLong));
+        register(Integer.class, converter("INTEGER", Types.INTEGER,
+                (resultSet, index) -> {
+                    var value = resultSet.getInt(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setInt));
+        register(int.class, converter("INTEGER", Types.INTEGER, ResultSet::getInt, PreparedStatement::setInt));
+        register(Short.class, converter("SMALLINT", Types.SMALLINT,
+                (resultSet, index) -> {
+                    var value = resultSet.getShort(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setShort));
+        register(short.class, converter("SMALLINT", Types.SMALLINT, ResultSet::getShort, PreparedStatement::setShort));
+        register(Byte.class, converter("TINYINT", Types.TINYINT,
+                (resultSet, index) -> {
+                    var value = resultSet.getByte(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setByte));
+        register(byte.class, converter("TINYINT", Types.TINYINT, ResultSet::getByte, PreparedStatement::setByte));
+        register(Double.class, converter("DOUBLE", Types.DOUBLE,
+                (resultSet, index) -> {
+                    var value = resultSet.getDouble(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setDouble));
+        register(double.class, converter("DOUBLE", Types.DOUBLE, ResultSet::getDouble, PreparedStatement::setDouble));
+        register(Float.class, converter("REAL", Types.REAL,
+                (resultSet, index) -> {
+                    var value = resultSet.getFloat(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setFloat));
+        register(float.class, converter("REAL", Types.REAL, ResultSet::getFloat, PreparedStatement::setFloat));
+        register(Boolean.class, converter("BOOLEAN", Types.BOOLEAN,
+                (resultSet, index) -> {
+                    var value = resultSet.getBoolean(index);
+                    return resultSet.wasNull() ? null : value;
+                },
+                PreparedStatement::setBoolean));
+        register(boolean.class, converter("BOOLEAN", Types.BOOLEAN, ResultSet::getBoolean, PreparedStatement::setBoolean));
+        register(BigDecimal.class, converter("DECIMAL", Types.DECIMAL,
+                ResultSet::getBigDecimal, PreparedStatement::setBigDecimal));
+        register(byte[].class, converter("BINARY", Types.BINARY, ResultSet::getBytes, PreparedStatement::setBytes));
+        register(LocalDate.class, objectConverter(LocalDate.class, "DATE", Types.DATE));
+        register(LocalTime.class, objectConverter(LocalTime.class, "TIME", Types.TIME));
+        register(LocalDateTime.class, objectConverter(LocalDateTime.class, "TIMESTAMP", Types.TIMESTAMP));
+        register(OffsetDateTime.class, objectConverter(OffsetDateTime.class, "TIMESTAMP WITH TIME ZONE",
+                Types.TIMESTAMP_WITH_TIMEZONE));
+        register(Date.class, converter("DATE", Types.DATE, ResultSet::getDate, PreparedStatement::setDate));
+        register(java.util.Date.class, converter("DATE", Types.DATE, ResultSet::getDate,
+                (statement, index, value) -> statement.setDate(index, new Date(value.getTime()))));
+        register(Time.class, converter("TIME", Types.TIME, ResultSet::getTime, PreparedStatement::setTime));
+        register(Timestamp.class, converter("TIMESTAMP", Types.TIMESTAMP,
+                ResultSet::getTimestamp, PreparedStatement::setTimestamp));
+    }
+
+    private TypeConverters() {
+    }
+
+    /**
+     * Registers the converter of the given type, replacing any previous one.
+     */
+    public static <T> void register(Class<T> type, TypeConverter<T> converter) {
+        CONVERTERS.put(Objects.requireNonNull(type), Objects.requireNonNull(converter));
+    }
+
+    /**
+     * Removes the converter registered for the type, if any. Entity metadata built while it
+     * was registered keeps using it.
+     */
+    public static void unregister(Class<?> type) {
+        CONVERTERS.remove(Objects.requireNonNull(type));
+    }
+
+    /**
+     * Returns the converter registered for the type, or a {@code getObject(index, type)} and
+     * {@code setObject} based converter without an SQL type when there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypeConverter<T> forType(Class<T> type) {
+        var converter = (TypeConverter<T>) CONVERTERS.get(type);
+        return converter != null ? converter : objectConverter(type, null, Types.NULL);
+    }
+
+    private static Character readCharacter(ResultSet resultSet, int index) throws SQLException {
+        var value = resultSet.getString(index);
+        return value == null || value.isEmpty() ? null : value.charAt(0);
+    }
+
+    private static <T> TypeConverter<T> objectConverter(Class<T> type, String sqlType, int sqlNullType) {
+        return converter(sqlType, sqlNullType,
+                (resultSet, index) -> resultSet.getObject(index, type),
+                PreparedStatement::setObject);
+    }
+
+    private static <T> TypeConverter<T> converter(String sqlType, int sqlNullType, Reader<T> reader, Writer<T> writer) {
+        return new TypeConverter<>() {
+            @Override
+            public String getSqlType() {
+                return sqlType;
+            }
+
+            @Override
+            public T read(ResultSet resultSet, int index) throws SQLException {
+                return reader.read(resultSet, index);
+            }
+
+            @Override
+            public void bind(PreparedStatement statement, int index, T value) throws SQLException {
+                if (value == null) {
+                    statement.setNull(index, sqlNullType);
+                } else {
+                    writer.write(statement, index, value);
+                }
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(ResultSet resultSet, int index) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+        void write(PreparedStatement statement, int index, T value) throws SQLException;
+    }
+}
@@ -0,0 +1,339 @@
+package metadata;
+
+import annotations.Column;
+import annotations.Id;
+import annotations.Index;
+import annotations.ManyToOne;
+import annotations.OneToMany;
+import exceptions.ORMException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import metadata.access.AccessorStrategy;
+import metadata.access.EntityInstantiator;
+import metadata.access.PropertyAccessor;
+import metadata.mapper.EntityMapper;
+import metadata.mapper.EntityMappers;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable description of an entity class. It is built once per class by
+ * {@link EntityMetadataRegistry} so that the CRUD paths of the ORM do not have to walk
+ * the declared fields and annotations of the class on every call.
+ */
+@Getter
+public final class EntityMetadata {
+    private static final String NO_FIELD_WITH_ID_ANNOTATION = "Entity has no field annotated with @Id";
+
+    private final Class<?> entityClass;
+    private final String tableName;
+    @Getter(AccessLevel.NONE)
+    private final PropertyMetadata idProperty;
+    /** All declared fields of the class, already made accessible. */
+    private final List<Field> declaredFields;
+    /** Properties annotated with {@link Column}, in declaration order. */
+    private final List<PropertyMetadata> columns;
+    /** Properties annotated with {@link Id} or {@link Column}, in declaration order. */
+    private final List<PropertyMetadata> selectProperties;
+    /** Properties stored on insert: {@link Column} and {@link ManyToOne} fields except the id. */
+    private final List<PropertyMetadata> insertProperties;
+    private final List<ManyToOneMetadata> manyToOneRelations;
+    private final List<OneToManyMetadata> oneToManyRelations;
+    /** {@link ManyToOne} relations selected together with the entity using a join. */
+    private final List<ManyToOneMetadata> joinFetchRelations;
+    /** Indexes declared with {@link Index} on the class and on its fields. */
+    private final List<IndexMetadata> indexes;
+    /** Comma separated, table qualified list of the selected columns. */
+    private final String selectColumns;
+    private final String insertSql;
+    @Getter(AccessLevel.NONE)
+    private final String updateSql;
+    @Getter(AccessLevel.NONE)
+    private final String deleteSql;
+    @Getter(AccessLevel.NONE)
+    private final String upsertSql;
+    @Getter(AccessLevel.NONE)
+    private final EntityInstantiator instantiator;
+    @Getter(AccessLevel.NONE)
+    private final int idSelectIndex;
+    /**
+     * Generated mapper used to read rows and bind inserts, {@code null} if there is none or
+     * if its SQL does not match this metadata, that is if it was generated from an older
+     * version of the class.
+     */
+    private final EntityMapper<Object> mapper;
+
+    @SuppressWarnings("unchecked")
+    EntityMetadata(Class<?> entityClass, AccessorStrategy accessorStrategy) {
+        this.entityClass = entityClass;
+        var generatedMapper = (EntityMapper<Object>) EntityMappers.forClass(entityClass);
+        this.tableName = entityClass.getSimpleName();
+
+        PropertyMetadata id = null;
+        var fields = new ArrayList<Field>();
+        var columnProperties = new ArrayList<PropertyMetadata>();
+        var selected = new ArrayList<PropertyMetadata>();
+        var inserted = new ArrayList<PropertyMetadata>();
+        var manyToOne = new ArrayList<ManyToOneMetadata>();
+        var oneToMany = new ArrayList<OneToManyMetadata>();
+        var fieldIndexes = new ArrayList<IndexMetadata>();
+
+        for (var field : entityClass.getDeclaredFields()) {
+            field.setAccessible(true);
+            fields.add(field);
+
+            boolean isId = field.isAnnotationPresent(Id.class);
+            boolean isColumn = field.isAnnotationPresent(Column.class);
+            boolean isManyToOne = field.isAnnotationPresent(ManyToOne.class);
+            boolean isOneToMany = field.isAnnotationPresent(OneToMany.class)
+                    && List.class.isAssignableFrom(field.getType());
+            if (!isId && !isColumn && !isManyToOne && !isOneToMany) {
+                continue;
+            }
+            var property = new PropertyMetadata(field, accessorFor(field, generatedMapper, accessorStrategy));
+            if (!isOneToMany) {
+                for (var index : field.getAnnotationsByType(Index.class)) {
+                    fieldIndexes.add(new IndexMetadata(tableName, index, List.of(property)));
+                }
+            }
+
+            if (isId) {
+                if (id == null) {
+                    id = property;
+                }
+                selected.add(property);
+                continue;
+            }
+            if (isColumn) {
+                columnProperties.add(property);
+                selected.add(property);
+            }
+            if (isColumn || isManyToOne) {
+                inserted.add(property);
+            }
+            if (isManyToOne) {
+                manyToOne.add(new ManyToOneMetadata(property));
+            }
+            if (isOneToMany) {
+                oneToMany.add(new OneToManyMetadata(property));
+            }
+        }
+
+        this.idProperty = id;
+        this.idSelectIndex = selected.indexOf(id);
+        this.declaredFields = Collections.unmodifiableList(fields);
+        this.columns = Collections.unmodifiableList(columnProperties);
+        this.selectProperties = Collections.unmodifiableList(selected);
+        this.insertProperties = Collections.unmodifiableList(inserted);
+        this.manyToOneRelations = Collections.unmodifiableList(manyToOne);
+        this.oneToManyRelations = Collections.unmodifiableList(oneToMany);
+        this.joinFetchRelations = manyToOne.stream()
+                .filter(ManyToOneMetadata::isJoinFetch)
+                .collect(Collectors.toUnmodifiableList());
+        this.instantiator = generatedMapper != null
+                ? generatedMapper::newInstance
+                : accessorStrategy.instantiatorFor(entityClass);
+
+        var declaredIndexes = new ArrayList<IndexMetadata>();
+        for (var index : entityClass.getAnnotationsByType(Index.class)) {
+            if (index.columns().length == 0) {
+                throw new IllegalArgumentException("@Index on " + tableName + " must list its columns.");
+            }
+            var properties = new ArrayList<PropertyMetadata>();
+            for (var column : index.columns()) {
+                properties.add(getProperty(column));
+            }
+            declaredIndexes.add(new IndexMetadata(tableName, index, properties));
+        }
+        declaredIndexes.addAll(fieldIndexes);
+        this.indexes = Collections.unmodifiableList(declaredIndexes);
+
+        this.selectColumns = selected.stream()
+                .map(property -> tableName + "." + property.getName())
+                .collect(Collectors.joining(", "));
+
+        this.insertSql = "INSERT INTO " + tableName + " (" +
+                inserted.stream().map(PropertyMetadata::getColumnName).collect(Collectors.joining(", ")) +
+                ") VALUES (" +
+                inserted.stream().map(property -> "?").collect(Collectors.joining(", ")) +
+                ")";
+        if (id == null) {
+            this.updateSql = null;
+            this.deleteSql = null;
+            this.upsertSql = null;
+        } else {
+            this.updateSql = "UPDATE " + tableName + " SET " +
+                    columnProperties.stream()
+                            .map(property -> property.getColumnName() + " = ?")
+                            .collect(Collectors.joining(", ")) +
+                    " WHERE " + id.getColumnName() + " = ?";
+            this.deleteSql = "DELETE FROM " + tableName + " WHERE " + id.getColumnName() + " = ?";
+            var upsertColumns = new ArrayList<PropertyMetadata>();
+            upsertColumns.add(id);
+            upsertColumns.addAll(inserted);
+            this.upsertSql = "MERGE INTO " + tableName + " (" +
+                    upsertColumns.stream().map(PropertyMetadata::getColumnName).collect(Collectors.joining(", ")) +
+                    ") KEY(" + id.getColumnName() + ") VALUES (" +
+                    upsertColumns.stream().map(property -> "?").collect(Collectors.joining(", ")) +
+                    ")";
+        }
+        this.mapper = generatedMapper != null
+                && generatedMapper.getSelectColumns().equals(selectColumns)
+                && generatedMapper.getInsertSql().equals(insertSql)
+                && Objects.equals(generatedMapper.getUpdateSql(), updateSql)
+                && Objects.equals(generatedMapper.getDeleteSql(), deleteSql)
+                ? generatedMapper
+                : null;
+    }
+
+    private static PropertyAccessor accessorFor(Field field, EntityMapper<?> mapper, AccessorStrategy accessorStrategy) {
+        var accessor = mapper == null ? null : mapper.getAccessor(field.getName());
+        return accessor != null ? accessor : accessorStrategy.accessorFor(field);
+    }
+
+    /**
+     * Returns the property annotated with {@link Id}.
+     *
+     * @throws ORMException if the class has no such field
+     */
+    public PropertyMetadata getIdProperty() {
+        if (idProperty == null) {
+            throw new ORMException(NO_FIELD_WITH_ID_ANNOTATION, new NoSuchFieldException());
+        }
+        return idProperty;
+    }
+
+    /**
+     * Returns the {@link Id}, {@link Column} or {@link ManyToOne} property with the given
+     * field name, that is a property stored in a column of the entity's table.
+     *
+     * @throws IllegalArgumentException if there is no such property
+     */
+    public PropertyMetadata getProperty(String name) {
+        for (var property : selectProperties) {
+            if (property.getName().equals(name)) {
+                return property;
+            }
+        }
+        for (var relation : manyToOneRelations) {
+            if (relation.getProperty().getName().equals(name)) {
+                return relation.getProperty();
+            }
+        }
+        throw new IllegalArgumentException(tableName + " has no column property named " + name);
+    }
+
+    /**
+     * Returns the zero-based position of the id among the {@link #getSelectProperties() selected properties}.
+     */
+    public int getIdSelectIndex() {
+        getIdProperty();
+        return idSelectIndex;
+    }
+
+    public Field getIdField() {
+        return getIdProperty().getField();
+    }
+
+    /**
+     * {@code UPDATE} of all {@link Column} properties, followed by the id parameter.
+     */
+    public String getUpdateSql() {
+        getIdProperty();
+        return updateSql;
+    }
+
+    /**
+     * {@code UPDATE} of the {@link Column} properties at the given indexes of
+     * {@link #getColumns()}, followed by the id parameter.
+     */
+    public String getUpdateSql(BitSet changedColumns) {
+        return "UPDATE " + tableName + " SET " +
+                changedColumns.stream()
+                        .mapToObj(columns::get)
+                        .map(property -> property.getColumnName() + " = ?")
+                        .collect(Collectors.joining(", ")) +
+                " WHERE " + getIdProperty().getColumnName() + " = ?";
+    }
+
+    public String getDeleteSql() {
+        getIdProperty();
+        return deleteSql;
+    }
+
+    /**
+     * H2 {@code MERGE INTO ... KEY(id)} of the id followed by the insert properties.
+     */
+    public String getUpsertSql() {
+        getIdProperty();
+        return upsertSql;
+    }
+
+    /**
+     * Returns the selected columns qualified with the given table alias instead of the table name.
+     */
+    public String getSelectColumns(String alias) {
+        return selectProperties.stream()
+                .map(property -> alias + "." + property.getName())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Whether some relations still have to be loaded after the entity row has been read,
+     * that is relations that are not selected with a join.
+     */
+    public boolean hasRelations() {
+        return manyToOneRelations.size() > joinFetchRelations.size() || !oneToManyRelations.isEmpty();
+    }
+
+    /**
+     * Returns the values of the {@link Column} properties of the entity, in the order of
+     * {@link #getColumns()}.
+     */
+    public Object[] snapshot(Object entity) {
+        var snapshot = new Object[columns.size()];
+        for (var i = 0; i < snapshot.length; i++) {
+            snapshot[i] = columns.get(i).get(entity);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the indexes of the {@link Column} properties whose values differ from the
+     * given {@link #snapshot(Object) snapshot}.
+     */
+    public BitSet changedColumns(Object entity, Object[] snapshot) {
+        var changed = new BitSet(columns.size());
+        for (var i = 0; i < snapshot.length; i++) {
+            var value = columns.get(i).get(entity);
+            if (!Objects.deepEquals(value, snapshot[i])) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Creates a new instance of the entity using its no-argument constructor.
+     */
+    public Object newInstance() {
+        return instantiator.newInstance();
+    }
+
+    /**
+     * Returns the id of the given entity or {@code null} if it has not been assigned yet.
+     */
+    public Long getId(Object entity) {
+        return (Long) getIdProperty().get(entity);
+    }
+
+    public void setId(Object entity, Long id) {
+        getIdProperty().set(entity, id);
+    }
+}
@@ -0,0 +1,48 @@
+package metadata;
+
+import annotations.Entity;
+import metadata.access.AccessorStrategy;
+import metadata.access.MethodHandleAccessorStrategy;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide cache of {@link EntityMetadata}. Metadata is built lazily, once per class,
+ * and can safely be shared between threads because it is immutable.
+ */
+public final class EntityMetadataRegistry {
+    private static final Map<Class<?>, EntityMetadata> METADATA = new ConcurrentHashMap<>();
+
+    private static volatile AccessorStrategy accessorStrategy = MethodHandleAccessorStrategy.INSTANCE;
+
+    private EntityMetadataRegistry() {
+    }
+
+    /**
+     * Returns the metadata of the entity class, building it on first use.
+     *
+     * @throws IllegalArgumentException if the class is not annotated with {@link Entity};
+     *                                  checked before its fields are reflected on
+     */
+    public static EntityMetadata forClass(Class<?> clazz) {
+        if (!clazz.isAnnotationPresent(Entity.class)) {
+            throw new IllegalArgumentException(clazz.getName() + " is not marked with @Entity annotation.");
+        }
+        return METADATA.computeIfAbsent(clazz, type -> new EntityMetadata(type, accessorStrategy));
+    }
+
+    public static AccessorStrategy getAccessorStrategy() {
+        return accessorStrategy;
+    }
+
+    /**
+     * Changes the strategy used to read and write entity fields. Metadata built with the
+     * previous strategy is discarded.
+     */
+    public static void setAccessorStrategy(AccessorStrategy strategy) {
+        accessorStrategy = Objects.requireNonNull(strategy);
+        METADATA.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package metadata;
+
+import annotations.Index;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Describes an {@link Index} of an entity table: its name, the indexed columns in order
+ * and whether it is unique.
+ */
+@Getter
+public final class IndexMetadata {
+    private final String tableName;
+    private final String name;
+    private final List<String> columnNames;
+    private final boolean unique;
+
+    IndexMetadata(String tableName, Index annotation, List<PropertyMetadata> properties) {
+        this.tableName = tableName;
+        this.columnNames = properties.stream()
+                .map(PropertyMetadata::getColumnName)
+                .collect(Collectors.toUnmodifiableList());
+        this.name = annotation.name().isEmpty()
+                ? tableName + "_" + String.join("_", columnNames) + "_idx"
+                : annotation.name();
+        this.unique = annotation.unique();
+    }
+
+    public String getCreateSql() {
+        return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX IF NOT EXISTS " + name +
+                " ON " + tableName + " (" + String.join(", ", columnNames) + ")";
+    }
+}
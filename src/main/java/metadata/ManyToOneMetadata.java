@@ -0,0 +1,44 @@
+package metadata;
+
+import annotations.FetchType;
+import annotations.ManyToOne;
+import exceptions.ORMException;
+import lombok.Getter;
+
+import java.lang.reflect.Field;
+
+/**
+ * Describes a field annotated with {@link ManyToOne}: the owning field, the join column
+ * stored in the owner's table and the type of the referenced entity.
+ */
+@Getter
+public final class ManyToOneMetadata {
+    private static final String UNSUPPORTED_FETCH_TYPE = "FetchType.LAZY is not supported by @ManyToOne: %s";
+
+    private final PropertyMetadata property;
+    private final String joinColumn;
+    private final Class<?> targetType;
+    private final FetchType fetchType;
+
+    ManyToOneMetadata(PropertyMetadata property) {
+        this.property = property;
+        var annotation = property.getField().getAnnotation(ManyToOne.class);
+        this.joinColumn = annotation.value();
+        this.fetchType = annotation.fetch();
+        if (fetchType == FetchType.LAZY) {
+            throw new ORMException(String.format(UNSUPPORTED_FETCH_TYPE, property.getField()), null);
+        }
+        this.targetType = property.getType();
+    }
+
+    /**
+     * Whether the referenced entity is selected in the same query as its owner.
+     */
+    public boolean isJoinFetch() {
+        return fetchType == FetchType.JOIN;
+    }
+
+    public Field getField() {
+        return property.getField();
+    }
+}
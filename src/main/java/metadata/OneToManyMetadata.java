@@ -0,0 +1,47 @@
+package metadata;
+
+import annotations.FetchType;
+import annotations.OneToMany;
+import exceptions.ORMException;
+import lombok.Getter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+
+/**
+ * Describes a {@code List} field annotated with {@link OneToMany}: the owning field,
+ * the join column in the element table and the element type.
+ */
+@Getter
+public final class OneToManyMetadata {
+    private static final String UNSUPPORTED_FETCH_TYPE = "FetchType.JOIN is not supported by @OneToMany: %s";
+
+    private final PropertyMetadata property;
+    private final String mappedBy;
+    private final Class<?> elementType;
+    private final FetchType fetchType;
+
+    OneToManyMetadata(PropertyMetadata property) {
+        this.property = property;
+        var field = property.getField();
+        var annotation = field.getAnnotation(OneToMany.class);
+        this.mappedBy = annotation.mappedBy();
+        this.fetchType = annotation.fetch();
+        if (fetchType == FetchType.JOIN) {
+            throw new ORMException(String.format(UNSUPPORTED_FETCH_TYPE, property.getField()), null);
+        }
+        var listOfObjects = (ParameterizedType) field.getGenericType();
+        this.elementType = (Class<?>) listOfObjects.getActualTypeArguments()[0];
+    }
+
+    /**
+     * Whether the list is loaded on first access instead of together with its owner.
+     */
+    public boolean isLazy() {
+        return fetchType == FetchType.LAZY;
+    }
+
+    public Field getField() {
+        return property.getField();
+    }
+}
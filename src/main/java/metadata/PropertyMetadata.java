@@ -0,0 +1,87 @@
+package metadata;
+
+import annotations.ManyToOne;
+import jdbc.TypeConverter;
+import jdbc.TypeConverters;
+import lombok.AccessLevel;
+import lombok.Getter;
+import metadata.access.PropertyAccessor;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A persistent field of an entity together with the column it is stored in and the
+ * accessor used to read and write it.
+ */
+@Getter
+public final class PropertyMetadata {
+    private final Field field;
+    private final String columnName;
+    private final boolean manyToOne;
+    @Getter(AccessLevel.NONE)
+    private final PropertyAccessor accessor;
+    /** Converter of the column value, the id type for {@link ManyToOne} properties. */
+    private final TypeConverter<Object> converter;
+
+    @SuppressWarnings("unchecked")
+    PropertyMetadata(Field field, PropertyAccessor accessor) {
+        this.field = field;
+        this.manyToOne = field.isAnnotationPresent(ManyToOne.class);
+        this.columnName = manyToOne ? field.getAnnotation(ManyToOne.class).value() : field.getName();
+        this.accessor = accessor;
+        Class<?> columnType = manyToOne ? Long.class : field.getType();
+        this.converter = (TypeConverter<Object>) TypeConverters.forType(columnType);
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * Returns the type of the values of the property, with primitive types boxed.
+     */
+    public Class<?> getValueType() {
+        return MethodType.methodType(field.getType()).wrap().returnType();
+    }
+
+    public Object get(Object entity) {
+        return accessor.get(entity);
+    }
+
+    public void set(Object entity, Object value) {
+        accessor.set(entity, value);
+    }
+
+    /**
+     * Binds the column value of this property, read from the entity, to the statement
+     * parameter. For {@link ManyToOne} properties the id of the referenced entity is bound.
+     */
+    public void bind(PreparedStatement statement, int index, Object entity) throws SQLException {
+        bindValue(statement, index, get(entity));
+    }
+
+    /**
+     * Binds a value of this property to the statement parameter.
+     */
+    public void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (manyToOne && value != null) {
+            value = EntityMetadataRegistry.forClass(value.getClass()).getId(value);
+        }
+        converter.bind(statement, index, value);
+    }
+
+    /**
+     * Reads the column value of this property from the current row of the result set.
+     */
+    public Object read(ResultSet resultSet, int index) throws SQLException {
+        return converter.read(resultSet, index);
+    }
+}
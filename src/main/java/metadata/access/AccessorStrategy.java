@@ -0,0 +1,16 @@
+package metadata.access;
+
+import java.lang.reflect.Field;
+
+/**
+ * Strategy used by the entity metadata to build field accessors and instantiators.
+ * The returned objects are created once per entity class and reused for every row.
+ *
+ * @see MethodHandleAccessorStrategy
+ * @see ReflectionAccessorStrategy
+ */
+public interface AccessorStrategy {
+    PropertyAccessor accessorFor(Field field);
+
+    EntityInstantiator instantiatorFor(Class<?> type);
+}
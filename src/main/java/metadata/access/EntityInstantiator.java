@@ -0,0 +1,9 @@
+package metadata.access;
+
+/**
+ * Creates new, empty instances of an entity class.
+ */
+@FunctionalInterface
+public interface EntityInstantiator {
+    Object newInstance();
+}
@@ -0,0 +1,104 @@
+package metadata.access;
+
+import exceptions.ORMException;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * Accessor strategy based on {@link MethodHandle}s. Getters and setters are
+ * {@code unreflect}ed field handles adapted to {@code (Object)Object} and
+ * {@code (Object, Object)void}, so that they can be called with {@code invokeExact};
+ * constructors are spun into a {@link Supplier} with {@link LambdaMetafactory}.
+ * Whenever a handle cannot be created (final fields, inaccessible classes) the
+ * {@link ReflectionAccessorStrategy} is used instead.
+ * <p>
+ * There is one accessor per field, so its handles are held in instance fields rather than
+ * in {@code static final} ones, and the JIT cannot constant-fold them. A call is therefore
+ * an indirect handle invocation. That is usually cheaper than {@link Field#get(Object)},
+ * but not as fast as direct field access, which the generated
+ * {@link metadata.mapper.EntityMapper}s provide. Failures are wrapped in an
+ * {@link ORMException}, but {@link Error}s are rethrown as they are.
+ */
+public final class MethodHandleAccessorStrategy implements AccessorStrategy {
+    public static final MethodHandleAccessorStrategy INSTANCE = new MethodHandleAccessorStrategy();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final String FAILED_FIELD_GETTING_EXCEPTION = "Failed to get field.";
+
+    @Override
+    public PropertyAccessor accessorFor(Field field) {
+        if (Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+            return ReflectionAccessorStrategy.INSTANCE.accessorFor(field);
+        }
+        try {
+            var lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            var getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            var setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            return new MethodHandleAccessor(getter, setter);
+        } catch (IllegalAccessException e) {
+            return ReflectionAccessorStrategy.INSTANCE.accessorFor(field);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EntityInstantiator instantiatorFor(Class<?> type) {
+        try {
+            var lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            var constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+            var callSite = LambdaMetafactory.metafactory(
+                    lookup,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type)
+            );
+            Supplier<Object> supplier = (Supplier<Object>) callSite.getTarget().invokeExact();
+            return supplier::get;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            return ReflectionAccessorStrategy.INSTANCE.instantiatorFor(type);
+        }
+    }
+
+    private static final class MethodHandleAccessor implements PropertyAccessor {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private MethodHandleAccessor(MethodHandle getter, MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package metadata.access;
+
+/**
+ * Reads and writes a single field of an entity.
+ */
+public interface PropertyAccessor {
+    Object get(Object entity);
+
+    void set(Object entity, Object value);
+}
@@ -0,0 +1,66 @@
+package metadata.access;
+
+import exceptions.ORMException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Accessor strategy based on {@link Field#get}, {@link Field#set} and
+ * {@link Constructor#newInstance}. It works for every class and is used as the fallback
+ * when a faster accessor cannot be created.
+ */
+public final class ReflectionAccessorStrategy implements AccessorStrategy {
+    public static final ReflectionAccessorStrategy INSTANCE = new ReflectionAccessorStrategy();
+
+    private static final String FAILED_FIELD_GETTING_EXCEPTION = "Failed to get field.";
+
+    @Override
+    public PropertyAccessor accessorFor(Field field) {
+        field.setAccessible(true);
+        return new PropertyAccessor() {
+            @Override
+            public Object get(Object entity) {
+                try {
+                    return field.get(entity);
+                } catch (IllegalAccessException e) {
+                    throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+                }
+            }
+
+            @Override
+            public void set(Object entity, Object value) {
+                try {
+                    field.set(entity, value);
+                } catch (IllegalAccessException e) {
+                    throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public EntityInstantiator instantiatorFor(Class<?> type) {
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            return () -> {
+                throw new ORMException("Failed to find such constructor", e);
+            };
+        }
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (InvocationTargetException e) {
+                throw new ORMException("Failed to invoke constructor or class method", e);
+            } catch (InstantiationException e) {
+                throw new ORMException("Failed to create class using newInstance method", e);
+            } catch (IllegalAccessException e) {
+                throw new ORMException(FAILED_FIELD_GETTING_EXCEPTION, e);
+            }
+        };
+    }
+}
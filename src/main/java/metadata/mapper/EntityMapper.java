@@ -0,0 +1,48 @@
+package metadata.mapper;
+
+import metadata.access.PropertyAccessor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reflection-free mapping of one entity class, usually generated at compile time by
+ * {@link processor.EntityMapperProcessor} and registered as a {@link java.util.ServiceLoader}
+ * provider. When a mapper is available, {@link metadata.EntityMetadata} uses it instead of
+ * the {@link metadata.access.AccessorStrategy} for the fields it covers.
+ *
+ * @param <T> type of the entity
+ */
+public interface EntityMapper<T> {
+    Class<T> getEntityClass();
+
+    T newInstance();
+
+    /**
+     * Returns the accessor of the {@code @Id}, {@code @Column}, {@code @ManyToOne} or
+     * {@code @OneToMany} field with the given name, or {@code null} if it is not covered.
+     */
+    PropertyAccessor getAccessor(String fieldName);
+
+    /**
+     * Sets the {@code @Id} and {@code @Column} fields, in declaration order, from the columns
+     * of the current row starting at {@code firstColumn}.
+     */
+    void hydrate(T entity, ResultSet resultSet, int firstColumn) throws SQLException;
+
+    /**
+     * Binds the {@code @Column} and {@code @ManyToOne} fields, in declaration order, to the
+     * parameters of {@link #getInsertSql()}.
+     */
+    void bindInsert(PreparedStatement statement, T entity) throws SQLException;
+
+    /** Comma separated, table qualified list of the {@code @Id} and {@code @Column} columns. */
+    String getSelectColumns();
+
+    String getInsertSql();
+
+    String getUpdateSql();
+
+    String getDeleteSql();
+}
@@ -0,0 +1,50 @@
+package metadata.mapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Looks up the {@link EntityMapper}s registered with {@link ServiceLoader}. Providers are
+ * loaded once per class loader of the entity classes, on first use.
+ */
+public final class EntityMappers {
+    private static final Map<ClassLoader, Map<Class<?>, EntityMapper<?>>> MAPPERS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private EntityMappers() {
+    }
+
+    /**
+     * Returns the mapper of the entity class, or {@code null} if none is registered.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMapper<T> forClass(Class<T> entityClass) {
+        var classLoader = entityClass.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+        return (EntityMapper<T>) MAPPERS.computeIfAbsent(classLoader, EntityMappers::load).get(entityClass);
+    }
+
+    private static Map<Class<?>, EntityMapper<?>> load(ClassLoader classLoader) {
+        var mappers = new HashMap<Class<?>, EntityMapper<?>>();
+        var providers = ServiceLoader.load(EntityMapper.class, classLoader).iterator();
+        try {
+            while (providers.hasNext()) {
+                try {
+                    EntityMapper<?> mapper = providers.next();
+                    mappers.put(mapper.getEntityClass(), mapper);
+                } catch (ServiceConfigurationError e) {
+                    // a provider that cannot be instantiated leaves its entity to the reflective mapping
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            // an unreadable provider configuration leaves the remaining entities to the reflective mapping
+        }
+        return mappers;
+    }
+}
@@ -0,0 +1,236 @@
+package pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Lightweight bounded pool of JDBC connections.
+ * <p>
+ * The number of borrowed connections is bounded by a {@link Semaphore}; idle connections
+ * are kept in a lock-free deque and the most recently returned one is borrowed first,
+ * so an uncontended borrow takes neither a lock nor a database round trip. A connection
+ * that has been idle for a while is checked with {@link Connection#isValid(int)} before it
+ * is handed out, and connections idle for longer than the idle timeout are closed when
+ * other connections are returned.
+ * <p>
+ * Borrowed connections are {@link PooledConnection}s: closing them returns the connection
+ * to the pool. The pool is thread-safe.
+ */
+@Slf4j
+public class ConnectionPool implements DataSource, AutoCloseable {
+    /** Connections used more recently than this are handed out without validation. */
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final ConnectionFactory connectionFactory;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final int maxSize;
+    private final Deque<PoolEntry> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool of connections opened by the given data source, usually a driver
+     * provided one such as {@code org.h2.jdbcx.JdbcDataSource}.
+     */
+    public ConnectionPool(DataSource dataSource, PoolConfig config) {
+        this(dataSource::getConnection, config);
+    }
+
+    /**
+     * Creates a pool of connections opened with {@link DriverManager}.
+     */
+    public ConnectionPool(String url, String username, String password, PoolConfig config) {
+        this(() -> DriverManager.getConnection(url, username, password), config);
+    }
+
+    private ConnectionPool(ConnectionFactory connectionFactory, PoolConfig config) {
+        this.connectionFactory = connectionFactory;
+        this.borrowTimeoutNanos = config.getBorrowTimeout().toNanos();
+        this.idleTimeoutNanos = config.getIdleTimeout().toNanos();
+        this.maxSize = config.getMaxSize();
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection, waiting at most the configured borrow timeout for one to be
+     * returned when all connections are in use.
+     *
+     * @throws SQLTransientConnectionException if no connection became available in time
+     */
+    @Override
+    public PooledConnection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        if (!permits.tryAcquire()) {
+            try {
+                if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new SQLTransientConnectionException("Timed out waiting for a pooled connection.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+            }
+        }
+        try {
+            return takeIdleOrCreate().lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PoolEntry takeIdleOrCreate() throws SQLException {
+        PoolEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (isUsable(entry)) {
+                return entry;
+            }
+            discard(entry);
+        }
+        entry = new PoolEntry(this, connectionFactory.create());
+        total.incrementAndGet();
+        return entry;
+    }
+
+    private boolean isUsable(PoolEntry entry) {
+        if (entry.idleNanos(System.nanoTime()) < VALIDATION_INTERVAL_NANOS) {
+            return true;
+        }
+        try {
+            return entry.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void release(PoolEntry entry) {
+        try {
+            if (closed || !entry.reset()) {
+                discard(entry);
+            } else {
+                idle.offerFirst(entry);
+                if (closed && idle.remove(entry)) {
+                    discard(entry);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+        evictIdle();
+    }
+
+    /**
+     * Closes the least recently used connections that have been idle for longer than the
+     * idle timeout. They are at the tail of the deque.
+     */
+    private void evictIdle() {
+        var now = System.nanoTime();
+        PoolEntry eldest;
+        while ((eldest = idle.peekLast()) != null && eldest.idleNanos(now) > idleTimeoutNanos) {
+            if (idle.removeLastOccurrence(eldest)) {
+                discard(eldest);
+            }
+        }
+    }
+
+    private void discard(PoolEntry entry) {
+        total.decrementAndGet();
+        entry.close();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of open connections, borrowed or idle.
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return Math.max(0, total.get() - idle.size());
+    }
+
+    /**
+     * Closes the idle connections; borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PoolEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+        log.info("Connection pool has been closed.");
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the credentials of the pool.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Connection pool is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+}
@@ -0,0 +1,53 @@
+package pool;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of a {@link ConnectionPool}.
+ */
+public final class PoolConfig {
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final Duration DEFAULT_BORROW_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final int maxSize;
+    private final Duration borrowTimeout;
+    private final Duration idleTimeout;
+
+    /**
+     * @param maxSize       maximum number of open connections, borrowed or idle
+     * @param borrowTimeout time to wait for a connection when all of them are borrowed
+     * @param idleTimeout   time after which an unused connection is closed
+     */
+    public PoolConfig(int maxSize, Duration borrowTimeout, Duration idleTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        }
+        if (borrowTimeout.isNegative()) {
+            throw new IllegalArgumentException("Borrow timeout must not be negative.");
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive.");
+        }
+        this.maxSize = maxSize;
+        this.borrowTimeout = Objects.requireNonNull(borrowTimeout);
+        this.idleTimeout = Objects.requireNonNull(idleTimeout);
+    }
+
+    public static PoolConfig defaults() {
+        return new PoolConfig(DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+}
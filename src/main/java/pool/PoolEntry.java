@@ -0,0 +1,118 @@
+package pool;
+
+import jdbc.StatementCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool} together with its statement cache.
+ * Every borrow hands out a new {@link PooledConnection} proxy, so that a proxy closed once
+ * can no longer reach the connection after it went back to the pool.
+ */
+@Slf4j
+final class PoolEntry {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final int defaultIsolation;
+    private volatile long lastReleased = System.nanoTime();
+
+    PoolEntry(ConnectionPool pool, Connection connection) throws SQLException {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection);
+        this.defaultIsolation = connection.getTransactionIsolation();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    long idleNanos(long now) {
+        return now - lastReleased;
+    }
+
+    PooledConnection lease() {
+        return (PooledConnection) Proxy.newProxyInstance(
+                PooledConnection.class.getClassLoader(),
+                new Class<?>[]{PooledConnection.class},
+                new Handler()
+        );
+    }
+
+    /**
+     * Restores the defaults changed by the borrower. Returns {@code false} if the connection
+     * is broken and has to be discarded.
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (connection.getTransactionIsolation() != defaultIsolation) {
+                connection.setTransactionIsolation(defaultIsolation);
+            }
+            connection.clearWarnings();
+            lastReleased = System.nanoTime();
+            return true;
+        } catch (SQLException e) {
+            log.warn("Failed to reset a pooled connection", e);
+            return false;
+        }
+    }
+
+    void close() {
+        statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close a pooled connection", e);
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PoolEntry.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "getStatementCache":
+                    return statementCache;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + connection + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed.");
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pool;
+
+import jdbc.StatementCache;
+
+import java.sql.Connection;
+
+/**
+ * Connection borrowed from a {@link ConnectionPool}. Closing it returns the underlying
+ * connection to the pool. The {@link StatementCache} lives as long as the underlying
+ * connection, so statements prepared during one borrow are reused by the next ones.
+ */
+public interface PooledConnection extends Connection {
+
+    StatementCache getStatementCache();
+}
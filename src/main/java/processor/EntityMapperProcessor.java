@@ -0,0 +1,450 @@
+package processor;
+
+import annotations.Column;
+import annotations.Entity;
+import annotations.Id;
+import annotations.ManyToOne;
+import annotations.OneToMany;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@link metadata.mapper.EntityMapper} named {@code <Entity>_Mapper} next to
+ * every {@link Entity} class and registers the mappers in
+ * {@code META-INF/services/metadata.mapper.EntityMapper}.
+ * <p>
+ * Fields are accessed directly when they are not private, and otherwise through getters
+ * and setters that are either declared or generated by Lombok's {@code @Getter},
+ * {@code @Setter} or {@code @Data}. Entities that cannot be mapped this way (no id, no
+ * accessible no-argument constructor, missing accessors, nested classes) are reported with a
+ * note and keep being mapped by reflection. The service file lists the mappers of the
+ * entities compiled together, so all entities should be compiled in one pass.
+ */
+@SupportedAnnotationTypes("annotations.Entity")
+public final class EntityMapperProcessor extends AbstractProcessor {
+    static final String MAPPER_SUFFIX = "_Mapper";
+    private static final String SERVICE_FILE = "META-INF/services/metadata.mapper.EntityMapper";
+    private static final Map<TypeKind, String> PRIMITIVE_GETTERS = Map.of(
+            TypeKind.INT, "getInt",
+            TypeKind.LONG, "getLong",
+            TypeKind.SHORT, "getShort",
+            TypeKind.BYTE, "getByte",
+            TypeKind.DOUBLE, "getDouble",
+            TypeKind.FLOAT, "getFloat",
+            TypeKind.BOOLEAN, "getBoolean"
+    );
+    private static final Map<TypeKind, String> PRIMITIVE_SETTERS = Map.of(
+            TypeKind.INT, "setInt",
+            TypeKind.LONG, "setLong",
+            TypeKind.SHORT, "setShort",
+            TypeKind.BYTE, "setByte",
+            TypeKind.DOUBLE, "setDouble",
+            TypeKind.FLOAT, "setFloat",
+            TypeKind.BOOLEAN, "setBoolean"
+    );
+
+    private final Set<String> mappers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (var element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                generate((TypeElement) element);
+            }
+        }
+        if (roundEnv.processingOver() && !mappers.isEmpty()) {
+            writeServiceFile();
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        try {
+            var source = new MapperSource(type).toSource();
+            var mapperName = type.getQualifiedName() + MAPPER_SUFFIX;
+            try (var writer = processingEnv.getFiler().createSourceFile(mapperName, type).openWriter()) {
+                writer.write(source);
+            }
+            mappers.add(mapperName);
+        } catch (UnsupportedEntityException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    type.getSimpleName() + " is mapped by reflection: " + e.getMessage(), type);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write the mapper of " + type.getSimpleName() + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void writeServiceFile() {
+        try (var writer = processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE)
+                .openWriter()) {
+            for (var mapper : mappers) {
+                writer.write(mapper);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class UnsupportedEntityException extends Exception {
+        UnsupportedEntityException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Source of the mapper of one entity. The generated SQL follows the rules of
+     * {@link metadata.EntityMetadata}, which uses the mapper only if both agree.
+     */
+    private final class MapperSource {
+        private final TypeElement type;
+        private final String entityName;
+        private final String tableName;
+        private final List<VariableElement> selected = new ArrayList<>();
+        private final List<VariableElement> inserted = new ArrayList<>();
+        private final List<VariableElement> columns = new ArrayList<>();
+        private final List<VariableElement> persistent = new ArrayList<>();
+        private VariableElement id;
+
+        MapperSource(TypeElement type) throws UnsupportedEntityException {
+            this.type = type;
+            this.entityName = type.getSimpleName().toString();
+            this.tableName = entityName;
+            if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+                throw new UnsupportedEntityException("only top-level classes are supported");
+            }
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                throw new UnsupportedEntityException("the class is abstract");
+            }
+            var list = processingEnv.getTypeUtils().erasure(
+                    processingEnv.getElementUtils().getTypeElement("java.util.List").asType());
+            for (var field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                var isId = field.getAnnotation(Id.class) != null;
+                var isColumn = field.getAnnotation(Column.class) != null;
+                var isManyToOne = field.getAnnotation(ManyToOne.class) != null;
+                var isOneToMany = field.getAnnotation(OneToMany.class) != null
+                        && processingEnv.getTypeUtils().isAssignable(
+                        list, processingEnv.getTypeUtils().erasure(field.asType()));
+                if (!isId && !isColumn && !isManyToOne && !isOneToMany) {
+                    continue;
+                }
+                persistent.add(field);
+                if (isId) {
+                    if (id == null) {
+                        id = field;
+                    }
+                    selected.add(field);
+                    continue;
+                }
+                if (isColumn) {
+                    columns.add(field);
+                    selected.add(field);
+                }
+                if (isColumn || isManyToOne) {
+                    inserted.add(field);
+                }
+            }
+            if (id == null) {
+                throw new UnsupportedEntityException("no field is annotated with @Id");
+            }
+            if (!hasNoArgConstructor()) {
+                throw new UnsupportedEntityException("no accessible no-argument constructor");
+            }
+            for (var field : persistent) {
+                read(field, "entity");
+                write(field, "entity", "value");
+                if (field.asType().getKind() == TypeKind.CHAR) {
+                    throw new UnsupportedEntityException("char fields are not supported");
+                }
+            }
+        }
+
+        String toSource() throws UnsupportedEntityException {
+            var packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+            var source = new StringBuilder();
+            if (!packageName.isEmpty()) {
+                source.append("package ").append(packageName).append(";\n\n");
+            }
+            source.append("import jdbc.TypeConverter;\n")
+                    .append("import jdbc.TypeConverters;\n")
+                    .append("import metadata.EntityMetadataRegistry;\n")
+                    .append("import metadata.access.PropertyAccessor;\n")
+                    .append("import metadata.mapper.EntityMapper;\n\n")
+                    .append("import javax.annotation.processing.Generated;\n")
+                    .append("import java.sql.PreparedStatement;\n")
+                    .append("import java.sql.ResultSet;\n")
+                    .append("import java.sql.SQLException;\n\n")
+                    .append("/**\n * Mapper of {@link ").append(entityName).append("} generated at compile time.\n */\n")
+                    .append("@Generated(\"").append(EntityMapperProcessor.class.getName()).append("\")\n")
+                    .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                    .append("public final class ").append(entityName).append(MAPPER_SUFFIX)
+                    .append(" implements EntityMapper<").append(entityName).append("> {\n");
+
+            constant(source, "SELECT_COLUMNS", selectColumns());
+            constant(source, "INSERT_SQL", insertSql());
+            constant(source, "UPDATE_SQL", updateSql());
+            constant(source, "DELETE_SQL", "DELETE FROM " + tableName + " WHERE " + id.getSimpleName() + " = ?");
+            var converted = new LinkedHashSet<VariableElement>(selected);
+            converted.addAll(inserted);
+            for (var field : converted) {
+                if (field.asType().getKind().isPrimitive()) {
+                    continue;
+                }
+                var type = isManyToOne(field) ? "Long" : erasure(field.asType());
+                source.append("    private static final TypeConverter<").append(type).append("> ")
+                        .append(converter(field)).append(" = TypeConverters.forType(").append(type).append(".class);\n");
+            }
+
+            source.append("\n    @Override\n    public Class<").append(entityName).append("> getEntityClass() {\n")
+                    .append("        return ").append(entityName).append(".class;\n    }\n");
+            source.append("\n    @Override\n    public ").append(entityName).append(" newInstance() {\n")
+                    .append("        return new ").append(entityName).append("();\n    }\n");
+
+            source.append("\n    @Override\n    public PropertyAccessor getAccessor(String fieldName) {\n")
+                    .append("        switch (fieldName) {\n");
+            for (var field : persistent) {
+                var entity = "((" + entityName + ") entity)";
+                source.append("            case \"").append(field.getSimpleName()).append("\":\n")
+                        .append("                return new PropertyAccessor() {\n")
+                        .append("                    @Override\n")
+                        .append("                    public Object get(Object entity) {\n")
+                        .append("                        return ").append(read(field, entity)).append(";\n")
+                        .append("                    }\n\n")
+                        .append("                    @Override\n")
+                        .append("                    public void set(Object entity, Object value) {\n")
+                        .append("                        ").append(write(field, entity, "(" + boxed(field.asType()) + ") value"))
+                        .append(";\n")
+                        .append("                    }\n")
+                        .append("                };\n");
+            }
+            source.append("            default:\n                return null;\n        }\n    }\n");
+
+            source.append("\n    @Override\n    public void hydrate(").append(entityName)
+                    .append(" entity, ResultSet resultSet, int firstColumn) throws SQLException {\n");
+            for (var i = 0; i < selected.size(); i++) {
+                var field = selected.get(i);
+                var column = i == 0 ? "firstColumn" : "firstColumn + " + i;
+                var getter = PRIMITIVE_GETTERS.get(field.asType().getKind());
+                var value = getter != null
+                        ? "resultSet." + getter + "(" + column + ")"
+                        : converter(field) + ".read(resultSet, " + column + ")";
+                source.append("        ").append(write(field, "entity", value)).append(";\n");
+            }
+            source.append("    }\n");
+
+            source.append("\n    @Override\n    public void bindInsert(PreparedStatement statement, ").append(entityName)
+                    .append(" entity) throws SQLException {\n");
+            for (var i = 0; i < inserted.size(); i++) {
+                var field = inserted.get(i);
+                var setter = PRIMITIVE_SETTERS.get(field.asType().getKind());
+                if (isManyToOne(field)) {
+                    var target = "relation" + i;
+                    source.append("        Object ").append(target).append(" = ").append(read(field, "entity")).append(";\n")
+                            .append("        ").append(converter(field)).append(".bind(statement, ").append(i + 1).append(", ")
+                            .append(target).append(" == null ? null : EntityMetadataRegistry.forClass(")
+                            .append(target).append(".getClass()).getId(").append(target).append("));\n");
+                } else if (setter != null) {
+                    source.append("        statement.").append(setter).append("(").append(i + 1).append(", ")
+                            .append(read(field, "entity")).append(");\n");
+                } else {
+                    source.append("        ").append(converter(field)).append(".bind(statement, ").append(i + 1).append(", ")
+                            .append(read(field, "entity")).append(");\n");
+                }
+            }
+            source.append("    }\n");
+
+            getter(source, "getSelectColumns", "SELECT_COLUMNS");
+            getter(source, "getInsertSql", "INSERT_SQL");
+            getter(source, "getUpdateSql", "UPDATE_SQL");
+            getter(source, "getDeleteSql", "DELETE_SQL");
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private String selectColumns() {
+            var joiner = new StringJoiner(", ");
+            selected.forEach(field -> joiner.add(tableName + "." + field.getSimpleName()));
+            return joiner.toString();
+        }
+
+        private String insertSql() {
+            var names = new StringJoiner(", ");
+            var parameters = new StringJoiner(", ");
+            for (var field : inserted) {
+                names.add(columnName(field));
+                parameters.add("?");
+            }
+            return "INSERT INTO " + tableName + " (" + names + ") VALUES (" + parameters + ")";
+        }
+
+        private String updateSql() {
+            var assignments = new StringJoiner(", ");
+            columns.forEach(field -> assignments.add(columnName(field) + " = ?"));
+            return "UPDATE " + tableName + " SET " + assignments + " WHERE " + id.getSimpleName() + " = ?";
+        }
+
+        private String columnName(VariableElement field) {
+            return isManyToOne(field)
+                    ? field.getAnnotation(ManyToOne.class).value()
+                    : field.getSimpleName().toString();
+        }
+
+        private String converter(VariableElement field) {
+            return "CONVERTER_" + field.getSimpleName();
+        }
+
+        private boolean isManyToOne(VariableElement field) {
+            return field.getAnnotation(ManyToOne.class) != null;
+        }
+
+        private void constant(StringBuilder source, String name, String value) {
+            source.append("    private static final String ").append(name).append(" = \"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append("\";\n");
+        }
+
+        private void getter(StringBuilder source, String method, String constant) {
+            source.append("\n    @Override\n    public String ").append(method).append("() {\n")
+                    .append("        return ").append(constant).append(";\n    }\n");
+        }
+
+        private String read(VariableElement field, String entity) throws UnsupportedEntityException {
+            if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+                return entity + "." + field.getSimpleName();
+            }
+            var prefix = field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get";
+            var getter = prefix + capitalize(field);
+            if (hasMethod(getter, 0) || hasLombokAccessor(field, "lombok.Getter")) {
+                return entity + "." + getter + "()";
+            }
+            throw new UnsupportedEntityException("no getter for " + field.getSimpleName());
+        }
+
+        private String write(VariableElement field, String entity, String value) throws UnsupportedEntityException {
+            var modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.FINAL)) {
+                throw new UnsupportedEntityException(field.getSimpleName() + " is final");
+            }
+            if (!modifiers.contains(Modifier.PRIVATE)) {
+                return entity + "." + field.getSimpleName() + " = " + value;
+            }
+            var setter = "set" + capitalize(field);
+            if (hasMethod(setter, 1) || hasLombokAccessor(field, "lombok.Setter")) {
+                return entity + "." + setter + "(" + value + ")";
+            }
+            throw new UnsupportedEntityException("no setter for " + field.getSimpleName());
+        }
+
+        private boolean hasMethod(String name, int parameters) {
+            for (var method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(name)
+                        && method.getParameters().size() == parameters
+                        && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether Lombok generates the accessor, from an annotation on the field or the class.
+         */
+        private boolean hasLombokAccessor(VariableElement field, String annotation) {
+            var onField = lombokAnnotation(field, annotation);
+            if (onField != null) {
+                return isAccessible(onField);
+            }
+            var onType = lombokAnnotation(type, annotation);
+            if (onType != null) {
+                return isAccessible(onType);
+            }
+            return lombokAnnotation(type, "lombok.Data") != null;
+        }
+
+        private boolean hasNoArgConstructor() {
+            var constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+            for (var constructor : constructors) {
+                if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                    return true;
+                }
+            }
+            var noArgs = lombokAnnotation(type, "lombok.NoArgsConstructor");
+            if (noArgs != null) {
+                return isAccessible(noArgs);
+            }
+            // only the implicit default constructor remains, unless Lombok adds other ones
+            return constructors.isEmpty()
+                    && lombokAnnotation(type, "lombok.AllArgsConstructor") == null
+                    && lombokAnnotation(type, "lombok.RequiredArgsConstructor") == null;
+        }
+
+        private AnnotationMirror lombokAnnotation(Element element, String annotation) {
+            for (var mirror : element.getAnnotationMirrors()) {
+                var annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+                if (annotationType.getQualifiedName().contentEquals(annotation)) {
+                    return mirror;
+                }
+            }
+            return null;
+        }
+
+        private boolean isAccessible(AnnotationMirror mirror) {
+            for (var entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")
+                        || entry.getKey().getSimpleName().contentEquals("access")) {
+                    var level = entry.getValue().getValue().toString();
+                    return !level.endsWith("PRIVATE") && !level.endsWith("NONE");
+                }
+            }
+            return true;
+        }
+
+        private String capitalize(VariableElement field) {
+            var name = field.getSimpleName().toString();
+            return name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+        }
+
+        private String erasure(TypeMirror type) {
+            return processingEnv.getTypeUtils().erasure(type).toString();
+        }
+
+        private String boxed(TypeMirror type) {
+            if (type.getKind().isPrimitive()) {
+                return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                        .getQualifiedName().toString();
+            }
+            return erasure(type);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package query;
+
+import jdbc.StatementKey;
+import metadata.EntityMetadata;
+import metadata.EntityMetadataRegistry;
+import metadata.PropertyMetadata;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Query over one entity class, executed by {@code ORMManager.find(Criteria)}. Conditions
+ * refer to the {@code @Id}, {@code @Column} and {@code @ManyToOne} fields of the entity by
+ * name and are combined with {@code AND}; for {@code @ManyToOne} fields the referenced
+ * entity is compared by id.
+ * <pre>
+ * {@code
+ * Criteria.of(Book.class)
+ *     .eq("genre", "Fantasy")
+ *     .between("dateOfWriting", from, to)
+ *     .orderByDescending("dateOfWriting")
+ *     .limit(10)
+ * }
+ * </pre>
+ * Values must be instances of the type of the property, or of the referenced entity for
+ * {@code @ManyToOne} fields, and are always bound as statement parameters. The SQL is
+ * derived from the {@link #getShape() shape} of the query, which does not depend on the
+ * values, and is built only once per shape, and the SQL of the
+ * {@value #MAX_SQL_TEMPLATES} most recently used shapes is kept. A criteria object is not
+ * thread-safe.
+ *
+ * @param <T> type of the entities
+ */
+public final class Criteria<T> {
+    private static final int MAX_SQL_TEMPLATES = 256;
+    private static final String VALUE_TYPE_MISMATCH = "Value of type %s cannot be compared with %s of type %s.";
+    /** SQL by metadata and shape, so that metadata rebuilt by the registry gets fresh SQL. */
+    private static final Map<List<Object>, String> SQL_TEMPLATES = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+                    return size() > MAX_SQL_TEMPLATES;
+                }
+            });
+
+    private final Class<T> entityClass;
+    private final EntityMetadata metadata;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<String> orders = new ArrayList<>();
+    private Integer limit;
+
+    private Criteria(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        this.metadata = EntityMetadataRegistry.forClass(entityClass);
+    }
+
+    public static <T> Criteria<T> of(Class<T> entityClass) {
+        return new Criteria<>(entityClass);
+    }
+
+    /**
+     * Property equals the value; a {@code null} value matches {@code NULL} columns.
+     */
+    public Criteria<T> eq(String property, Object value) {
+        if (value == null) {
+            return add(property, Operator.IS_NULL, List.of());
+        }
+        return add(property, Operator.EQ, List.of(value));
+    }
+
+    public Criteria<T> ne(String property, Object value) {
+        if (value == null) {
+            return add(property, Operator.IS_NOT_NULL, List.of());
+        }
+        return add(property, Operator.NE, List.of(value));
+    }
+
+    public Criteria<T> lt(String property, Object value) {
+        return add(property, Operator.LT, List.of(requireValue(property, value)));
+    }
+
+    public Criteria<T> le(String property, Object value) {
+        return add(property, Operator.LE, List.of(requireValue(property, value)));
+    }
+
+    public Criteria<T> gt(String property, Object value) {
+        return add(property, Operator.GT, List.of(requireValue(property, value)));
+    }
+
+    public Criteria<T> ge(String property, Object value) {
+        return add(property, Operator.GE, List.of(requireValue(property, value)));
+    }
+
+    /**
+     * Property lies in the inclusive range.
+     */
+    public Criteria<T> between(String property, Object from, Object to) {
+        return add(property, Operator.BETWEEN, List.of(requireValue(property, from), requireValue(property, to)));
+    }
+
+    /**
+     * Property equals one of the values. The number of parameters is rounded up to a power
+     * of two, so that lists of similar length share one statement.
+     */
+    public Criteria<T> in(String property, Collection<?> values) {
+        return add(property, Operator.IN, new ArrayList<>(requireValue(property, values)));
+    }
+
+    /**
+     * Property matches the SQL {@code LIKE} pattern, with {@code %} and {@code _} wildcards.
+     */
+    public Criteria<T> like(String property, String pattern) {
+        return add(property, Operator.LIKE, List.of(requireValue(property, pattern)));
+    }
+
+    public Criteria<T> orderBy(String property) {
+        orders.add(column(metadata.getProperty(property)) + " ASC");
+        return this;
+    }
+
+    public Criteria<T> orderByDescending(String property) {
+        orders.add(column(metadata.getProperty(property)) + " DESC");
+        return this;
+    }
+
+    public Criteria<T> limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Query limit must be positive.");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    private static <V> V requireValue(String property, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value compared with " + property + " must not be null.");
+        }
+        return value;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is not an instance of the property type
+     */
+    private Criteria<T> add(String property, Operator operator, List<Object> values) {
+        var propertyMetadata = metadata.getProperty(property);
+        var type = propertyMetadata.getValueType();
+        for (var value : values) {
+            if (value != null && !type.isInstance(value)) {
+                throw new IllegalArgumentException(String.format(VALUE_TYPE_MISMATCH,
+                        value.getClass().getName(), property, type.getName()));
+            }
+        }
+        conditions.add(new Condition(propertyMetadata, operator, values));
+        return this;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Describes the SQL of the query without its values: the compared columns with their
+     * operators, the number of {@code IN} parameters, the ordering and whether a limit is set.
+     */
+    public String getShape() {
+        var shape = new StringJoiner(";");
+        for (var condition : conditions) {
+            shape.add(condition.shape());
+        }
+        shape.add("ORDER " + String.join(",", orders));
+        shape.add(limit == null ? "ALL" : "LIMIT");
+        return shape.toString();
+    }
+
+    /**
+     * Returns the {@code WHERE}, {@code ORDER BY} and {@code LIMIT} clauses to append to the
+     * select statement of the entity, with parameters in place of the values.
+     */
+    public String getSqlClauses() {
+        return SQL_TEMPLATES.computeIfAbsent(List.of(metadata, getShape()), key -> buildSqlClauses());
+    }
+
+    private String buildSqlClauses() {
+        var sql = new StringBuilder();
+        var where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        for (var condition : conditions) {
+            where.add(condition.sql());
+        }
+        sql.append(where);
+        if (!orders.isEmpty()) {
+            sql.append(" ORDER BY ").append(String.join(", ", orders));
+        }
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Binds the values of the query to the parameters of the {@link #getSqlClauses() clauses},
+     * starting at the first parameter.
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        var index = 1;
+        for (var condition : conditions) {
+            index = condition.bind(statement, index);
+        }
+        if (limit != null) {
+            statement.setInt(index, limit);
+        }
+    }
+
+    private String column(PropertyMetadata property) {
+        return metadata.getTableName() + "." + property.getColumnName();
+    }
+
+    private enum Operator {
+        EQ("="),
+        NE("<>"),
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">="),
+        LIKE("LIKE"),
+        BETWEEN("BETWEEN"),
+        IN("IN"),
+        IS_NULL("IS NULL"),
+        IS_NOT_NULL("IS NOT NULL");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    private final class Condition {
+        private final PropertyMetadata property;
+        private final Operator operator;
+        private final List<Object> values;
+        private final int parameters;
+
+        Condition(PropertyMetadata property, Operator operator, List<Object> values) {
+            this.property = property;
+            this.operator = operator;
+            this.values = values;
+            this.parameters = operator == Operator.IN ? StatementKey.inClauseSize(values.size()) : values.size();
+        }
+
+        String shape() {
+            return property.getName() + " " + operator + (operator == Operator.IN ? " " + parameters : "");
+        }
+
+        String sql() {
+            var column = column(property);
+            switch (operator) {
+                case IS_NULL:
+                case IS_NOT_NULL:
+                    return column + " " + operator.sql;
+                case BETWEEN:
+                    return column + " BETWEEN ? AND ?";
+                case IN:
+                    if (parameters == 0) {
+                        return "1 = 0";
+                    }
+                    var placeholders = new StringJoiner(", ", " IN (", ")");
+                    for (var i = 0; i < parameters; i++) {
+                        placeholders.add("?");
+                    }
+                    return column + placeholders;
+                default:
+                    return column + " " + operator.sql + " ?";
+            }
+        }
+
+        int bind(PreparedStatement statement, int index) throws SQLException {
+            for (var i = 0; i < parameters; i++) {
+                property.bindValue(statement, index++, values.get(Math.min(i, values.size() - 1)));
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package query;
+
+import exceptions.ORMException;
+import jdbc.TypeConverter;
+import jdbc.TypeConverters;
+import metadata.EntityMetadata;
+import metadata.EntityMetadataRegistry;
+import metadata.ManyToOneMetadata;
+import metadata.PropertyMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selection of some columns of an entity, executed by {@code ORMManager.project(Projection)}.
+ * Every selected row is passed straight to a constructor of the projection type, so no
+ * entity is instantiated, registered in the identity map or has its relations fetched.
+ * <p>
+ * Columns are given as paths: the name of an {@code @Id}, {@code @Column} or
+ * {@code @ManyToOne} field of the entity, or {@code relation.field} for a column of the
+ * entity referenced through a {@code @ManyToOne} field, which is {@code LEFT JOIN}ed.
+ * <pre>
+ * {@code
+ * Projection.of(Book.class, BookTitle.class)
+ *     .column("name")
+ *     .column("author.name")
+ * }
+ * </pre>
+ * The projection type needs a constructor with one parameter per column, in the order of
+ * the columns, whose parameter types accept the column types (primitives are boxed). The
+ * constructor is resolved once per projection type and column types and then shared by all
+ * projections; records fit naturally. A projection object is not thread-safe.
+ *
+ * @param <T> type of the entity
+ * @param <P> type of the projection
+ */
+public final class Projection<T, P> {
+    private static final String NO_MATCHING_CONSTRUCTOR = "%s has no constructor taking %s";
+    private static final String FAILED_PROJECTION_CREATION = "Failed to create projection.";
+    private static final Map<List<Object>, MethodHandle> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private final Class<T> entityClass;
+    private final Class<P> projectionType;
+    private final EntityMetadata metadata;
+    private final List<String> paths = new ArrayList<>();
+    private final List<String> columns = new ArrayList<>();
+    private final List<Class<?>> columnTypes = new ArrayList<>();
+    private final List<TypeConverter<?>> converters = new ArrayList<>();
+    private final Map<ManyToOneMetadata, String> joins = new LinkedHashMap<>();
+    private MethodHandle constructor;
+
+    private Projection(Class<T> entityClass, Class<P> projectionType) {
+        this.entityClass = entityClass;
+        this.projectionType = projectionType;
+        this.metadata = EntityMetadataRegistry.forClass(entityClass);
+    }
+
+    public static <T, P> Projection<T, P> of(Class<T> entityClass, Class<P> projectionType) {
+        return new Projection<>(entityClass, projectionType);
+    }
+
+    /**
+     * Adds the column at the given path as the next constructor argument.
+     *
+     * @throws IllegalArgumentException if the path does not name a column
+     */
+    public Projection<T, P> column(String path) {
+        var dot = path.indexOf('.');
+        if (dot < 0) {
+            var property = metadata.getProperty(path);
+            add(path, metadata.getTableName(), property);
+            return this;
+        }
+        var relation = manyToOne(path.substring(0, dot));
+        var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+        var alias = joins.computeIfAbsent(relation, r -> metadata.getTableName() + "_" + r.getField().getName());
+        add(path, alias, targetMetadata.getProperty(path.substring(dot + 1)));
+        return this;
+    }
+
+    private ManyToOneMetadata manyToOne(String name) {
+        for (var relation : metadata.getManyToOneRelations()) {
+            if (relation.getField().getName().equals(name)) {
+                return relation;
+            }
+        }
+        throw new IllegalArgumentException(metadata.getTableName() + " has no @ManyToOne property named " + name);
+    }
+
+    private void add(String path, String table, PropertyMetadata property) {
+        paths.add(path);
+        columns.add(table + "." + property.getColumnName());
+        var columnType = property.isManyToOne() ? Long.class : property.getValueType();
+        columnTypes.add(columnType);
+        converters.add(TypeConverters.forType(columnType));
+        constructor = null;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public Class<P> getProjectionType() {
+        return projectionType;
+    }
+
+    /**
+     * Describes the SQL of the projection: the projection type and the selected paths.
+     */
+    public String getShape() {
+        return projectionType.getName() + ":" + String.join(",", paths);
+    }
+
+    /**
+     * Returns the {@code SELECT ... FROM ...} of the selected columns, including the joins
+     * of the referenced entities. {@link Criteria#getSqlClauses() Criteria clauses} of the
+     * same entity can be appended to it.
+     */
+    public String getSelectSql() {
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("Projection selects no columns.");
+        }
+        var from = new StringBuilder(metadata.getTableName());
+        for (var join : joins.entrySet()) {
+            var relation = join.getKey();
+            var targetMetadata = EntityMetadataRegistry.forClass(relation.getTargetType());
+            from.append(" LEFT JOIN ")
+                    .append(targetMetadata.getTableName()).append(" ").append(join.getValue())
+                    .append(" ON ")
+                    .append(metadata.getTableName()).append(".").append(relation.getJoinColumn())
+                    .append("=")
+                    .append(join.getValue()).append(".").append(targetMetadata.getIdProperty().getColumnName());
+        }
+        return "SELECT " + String.join(", ", columns) + " FROM " + from;
+    }
+
+    /**
+     * Creates the projection from the current row of a result set of {@link #getSelectSql()}.
+     */
+    public P map(ResultSet resultSet) throws SQLException {
+        var handle = constructor();
+        var arguments = new Object[columnTypes.size()];
+        for (var i = 0; i < arguments.length; i++) {
+            arguments[i] = converters.get(i).read(resultSet, i + 1);
+        }
+        try {
+            return projectionType.cast((Object) handle.invokeExact(arguments));
+        } catch (Throwable e) {
+            throw new ORMException(FAILED_PROJECTION_CREATION, e);
+        }
+    }
+
+    private MethodHandle constructor() {
+        if (constructor == null) {
+            constructor = CONSTRUCTORS.computeIfAbsent(
+                    List.of(projectionType, List.copyOf(columnTypes)),
+                    key -> resolveConstructor(projectionType, List.copyOf(columnTypes))
+            );
+        }
+        return constructor;
+    }
+
+    /**
+     * Finds the constructor whose parameters accept the column types and adapts it to
+     * {@code (Object[])Object}, so that it can be called with {@code invokeExact}.
+     */
+    private static MethodHandle resolveConstructor(Class<?> type, List<Class<?>> columnTypes) {
+        for (var candidate : type.getDeclaredConstructors()) {
+            if (!accepts(candidate, columnTypes)) {
+                continue;
+            }
+            try {
+                candidate.setAccessible(true);
+                return MethodHandles.lookup().unreflectConstructor(candidate)
+                        .asSpreader(Object[].class, columnTypes.size())
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new ORMException(FAILED_PROJECTION_CREATION, e);
+            }
+        }
+        var names = new StringJoiner(", ", "(", ")");
+        columnTypes.forEach(columnType -> names.add(columnType.getSimpleName()));
+        throw new ORMException(String.format(NO_MATCHING_CONSTRUCTOR, type.getName(), names), new NoSuchMethodException());
+    }
+
+    private static boolean accepts(Constructor<?> constructor, List<Class<?>> columnTypes) {
+        var parameterTypes = constructor.getParameterTypes();
+        if (parameterTypes.length != columnTypes.size()) {
+            return false;
+        }
+        for (var i = 0; i < parameterTypes.length; i++) {
+            if (!boxed(parameterTypes[i]).isAssignableFrom(columnTypes.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
@@ -0,0 +1,262 @@
+package writebehind;
+
+import client.ORMManager;
+import exceptions.ORMException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer in front of {@link ORMManager#saveAll(java.util.Collection)} for
+ * entities inserted at a high rate. {@link #save(Object)} only appends the entity to a
+ * bounded lock-free queue; a background thread drains the queue into batched inserts
+ * whenever {@link WriteBehindConfig#getFlushSize()} entities are waiting or the oldest of
+ * them has waited for {@link WriteBehindConfig#getFlushInterval()}.
+ * <p>
+ * Producers are slowed down instead of the queue growing without bound: when the buffer is
+ * full, {@code save} waits for the flusher to make room. Saved entities get their ids only
+ * once they are flushed, and are durable only after {@link #flush()} or {@link #close()}
+ * has returned. The buffer is thread-safe and requires a thread-safe manager.
+ */
+@Slf4j
+public class WriteBehindBuffer implements AutoCloseable {
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PROGRESS_WAIT_MILLIS = 100;
+
+    private final ORMManager ormManager;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    /** First flush failure since the last call of {@link #flush()}. */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Object progress = new Object();
+    /**
+     * Held shared by producers from their {@code closed} check to their offer and
+     * exclusively by {@link #close()} to set {@code closed}, so that no entity is offered
+     * after the final drain.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Thread flusher;
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+
+    public WriteBehindBuffer(ORMManager ormManager, WriteBehindConfig config) {
+        if (!ormManager.isThreadSafe()) {
+            throw new IllegalArgumentException("ORMManager must be created with a DataSource to be used in the background.");
+        }
+        this.ormManager = ormManager;
+        this.capacity = config.getCapacity();
+        this.flushSize = config.getFlushSize();
+        this.flushIntervalNanos = config.getFlushInterval().toNanos();
+        this.offerTimeoutNanos = config.getOfferTimeout().toNanos();
+        this.flusher = new Thread(this::runFlusher, "orm-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a new entity for insertion, waiting at most the configured offer timeout for
+     * space in the buffer.
+     *
+     * @throws ORMException if the buffer is closed, its background thread has died or it
+     *                      stayed full for the whole timeout
+     */
+    public <T> void save(T entity) {
+        var deadline = System.nanoTime() + offerTimeoutNanos;
+        while (!trySave(entity)) {
+            if (closed) {
+                throw new ORMException("Write-behind buffer is closed.", null);
+            }
+            if (!flusher.isAlive()) {
+                throw flusherDied();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new ORMException("Write-behind buffer is full.", null);
+            }
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Queues a new entity for insertion if there is space in the buffer.
+     *
+     * @return {@code false} if the buffer is full or closed
+     */
+    public <T> boolean trySave(T entity) {
+        var lock = closeLock.readLock();
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            int current;
+            do {
+                current = depth.get();
+                if (current >= capacity) {
+                    return false;
+                }
+            } while (!depth.compareAndSet(current, current + 1));
+
+            queue.offer(entity);
+            enqueued.incrementAndGet();
+            if (current + 1 >= flushSize) {
+                LockSupport.unpark(flusher);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every entity queued before the call has been written.
+     *
+     * @throws ORMException if a batch failed since the previous call, whose entities are
+     *                      lost, or if the background thread has died
+     */
+    public void flush() {
+        var target = enqueued.get();
+        flushRequested = true;
+        LockSupport.unpark(flusher);
+        synchronized (progress) {
+            while (processed.get() < target) {
+                if (!flusher.isAlive()) {
+                    throw flusherDied();
+                }
+                try {
+                    progress.wait(PROGRESS_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ORMException("Interrupted while flushing the write-behind buffer.", e);
+                }
+            }
+        }
+        var error = failure.getAndSet(null);
+        if (error != null) {
+            throw new ORMException("Some entities of the write-behind buffer could not be saved.", error);
+        }
+    }
+
+    /**
+     * Stops accepting entities, flushes the waiting ones and stops the background thread.
+     */
+    @Override
+    public void close() {
+        var lock = closeLock.writeLock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flush();
+        } finally {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // entities queued by producers that took their slot before close
+            drain();
+        }
+    }
+
+    public WriteBehindStatistics getStatistics() {
+        return new WriteBehindStatistics(
+                depth.get(),
+                written.get(),
+                failed.get(),
+                flushes.get(),
+                Duration.ofNanos(lastFlushNanos.get()),
+                Duration.ofNanos(maxFlushNanos.get())
+        );
+    }
+
+    private ORMException flusherDied() {
+        return new ORMException("Write-behind buffer has stopped writing.", failure.get());
+    }
+
+    private void runFlusher() {
+        var oldestSince = System.nanoTime();
+        while (!closed || depth.get() > 0) {
+            var waiting = depth.get();
+            var now = System.nanoTime();
+            if (waiting == 0) {
+                oldestSince = now;
+            }
+            if (waiting >= flushSize || flushRequested || closed
+                    || (waiting > 0 && now - oldestSince >= flushIntervalNanos)) {
+                flushRequested = false;
+                drain();
+                oldestSince = System.nanoTime();
+            } else {
+                LockSupport.parkNanos(this, flushIntervalNanos - (now - oldestSince));
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        var batch = new ArrayList<>(flushSize);
+        Object entity;
+        while ((entity = queue.poll()) != null) {
+            batch.add(entity);
+            if (batch.size() == flushSize) {
+                write(batch);
+                batch = new ArrayList<>(flushSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    private void write(ArrayList<Object> batch) {
+        var start = System.nanoTime();
+        try {
+            ormManager.saveAll(batch);
+            written.addAndGet(batch.size());
+        } catch (Throwable e) {
+            // an Error must not kill the flusher, or flush() and save() would wait for it
+            log.error("Failed to save {} entities of the write-behind buffer", batch.size(), e);
+            failed.addAndGet(batch.size());
+            failure.compareAndSet(null, e);
+        } finally {
+            var latency = System.nanoTime() - start;
+            lastFlushNanos.set(latency);
+            maxFlushNanos.accumulateAndGet(latency, Math::max);
+            flushes.incrementAndGet();
+            depth.addAndGet(-batch.size());
+            processed.addAndGet(batch.size());
+        }
+    }
+}
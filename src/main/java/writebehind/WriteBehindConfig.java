@@ -0,0 +1,57 @@
+package writebehind;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of a {@link WriteBehindBuffer}.
+ */
+public final class WriteBehindConfig {
+    private final int capacity;
+    private final int flushSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+
+    /**
+     * @param capacity      maximum number of entities waiting in the buffer
+     * @param flushSize     number of waiting entities that triggers a flush, and the maximum
+     *                      number of entities saved by one {@code saveAll} call
+     * @param flushInterval maximum time an entity waits before it is flushed
+     * @param offerTimeout  time {@link WriteBehindBuffer#save(Object)} waits for free space
+     *                      when the buffer is full
+     */
+    public WriteBehindConfig(int capacity, int flushSize, Duration flushInterval, Duration offerTimeout) {
+        if (capacity < 1 || flushSize < 1) {
+            throw new IllegalArgumentException("Buffer capacity and flush size must be positive.");
+        }
+        if (flushSize > capacity) {
+            throw new IllegalArgumentException("Flush size must not exceed the buffer capacity.");
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive.");
+        }
+        if (offerTimeout.isNegative()) {
+            throw new IllegalArgumentException("Offer timeout must not be negative.");
+        }
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushInterval = Objects.requireNonNull(flushInterval);
+        this.offerTimeout = Objects.requireNonNull(offerTimeout);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public Duration getOfferTimeout() {
+        return offerTimeout;
+    }
+}
@@ -0,0 +1,75 @@
+package writebehind;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the counters of a {@link WriteBehindBuffer}.
+ */
+public final class WriteBehindStatistics {
+    private final int queueDepth;
+    private final long written;
+    private final long failed;
+    private final long flushes;
+    private final Duration lastFlushLatency;
+    private final Duration maxFlushLatency;
+
+    WriteBehindStatistics(
+            int queueDepth,
+            long written,
+            long failed,
+            long flushes,
+            Duration lastFlushLatency,
+            Duration maxFlushLatency) {
+        this.queueDepth = queueDepth;
+        this.written = written;
+        this.failed = failed;
+        this.flushes = flushes;
+        this.lastFlushLatency = lastFlushLatency;
+        this.maxFlushLatency = maxFlushLatency;
+    }
+
+    /**
+     * Number of entities waiting to be flushed.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Number of entities dropped because the batch they were flushed in failed.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Number of {@code saveAll} calls made by the flusher.
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public Duration getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    public Duration getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindStatistics{" +
+                "queueDepth=" + queueDepth +
+                ", written=" + written +
+                ", failed=" + failed +
+                ", flushes=" + flushes +
+                ", lastFlushLatency=" + lastFlushLatency +
+                ", maxFlushLatency=" + maxFlushLatency +
+                '}';
+    }
+}
@@ -0,0 +1,48 @@
+package cache;
+
+import client.entities.Author;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SecondLevelCacheTest {
+
+    @Test
+    @DisplayName("Should succeed when states and ids read before an eviction are not cached")
+    void givenEvictionAfterRead_put_shouldNotCacheStaleValues() {
+        var cache = new SecondLevelCache();
+        cache.configure(Author.class, new CacheConfig(10, Duration.ofMinutes(1)));
+
+        var generation = cache.getGeneration(Author.class);
+        cache.evict(Author.class, 1L);
+        cache.putState(Author.class, 1L, new Object[]{1L, "Yan"}, generation);
+        cache.putAllIds(Author.class, List.of(1L), generation);
+
+        assertNull(cache.getState(Author.class, 1L));
+        assertNull(cache.getAllIds(Author.class));
+
+        generation = cache.getGeneration(Author.class);
+        cache.putState(Author.class, 1L, new Object[]{1L, "Mark"}, generation);
+        assertEquals("Mark", cache.getState(Author.class, 1L)[1]);
+    }
+
+    @Test
+    @DisplayName("Should succeed when mutable values of a cached state are not shared with callers")
+    void givenStateWithBytes_putAndGet_shouldCopyTheBytes() {
+        var cache = new SecondLevelCache();
+        cache.configure(Author.class, new CacheConfig(10, Duration.ofMinutes(1)));
+        var bytes = new byte[]{1, 2, 3};
+
+        cache.putState(Author.class, 1L, new Object[]{1L, bytes}, cache.getGeneration(Author.class));
+        bytes[0] = 9;
+        ((byte[]) cache.getState(Author.class, 1L)[1])[1] = 9;
+
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) cache.getState(Author.class, 1L)[1]);
+    }
+}
@@ -1,20 +1,48 @@
 package client;
 
+import annotations.Entity;
+import annotations.FetchType;
+import annotations.Id;
+import annotations.ManyToOne;
+import annotations.OneToMany;
+import cache.CacheConfig;
+import cache.SecondLevelCache;
 import client.entities.Author;
 import client.entities.Book;
+import client.entities.House;
 import client.entities.Person;
 import exceptions.ORMException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import orm.testsupport.BaseIntegrationTest;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+import query.Criteria;
+import query.Projection;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 class ORMManagerTest extends BaseIntegrationTest {
@@ -164,4 +192,710 @@ class ORMManagerTest extends BaseIntegrationTest {
         assertEquals(author1.getId(), authors.get(0).getId());
         assertEquals(author2.getName(), authors.get(1).getName());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should succeed when a null column is merged as SQL NULL and the cached statements survive table recreation")
+    void givenPersonWithNullLastName_merge_shouldStoreNullAndReuseStatements() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Person.class);
+        Person person = new Person("Yan", "Levchenko", LocalDate.now());
+        ormManager.save(person);
+
+        person.setLastName(null);
+        ormManager.merge(person);
+
+        assertEquals(1, selectFrom("PERSON")
+                .where("PERSON.lastname IS NULL")
+                .stream().count());
+
+        ormManager.prepareRepositoryFor(Person.class);
+        Person another = new Person("Oksana", "Linnyk", LocalDate.now());
+        ormManager.save(another);
+
+        assertEquals(1L, another.getId());
+    }
+
+    @Test
+    @DisplayName("Should succeed when all saved books get generated ids and are stored in the db table")
+    void givenAuthorAndBooks_saveAll_shouldSaveInBatchesAndBackfillIds() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+        ormManager.setBatchSize(2);
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        Book book1 = new Book("Sumerki", "Love", LocalDate.now(), author);
+        Book book2 = new Book("Surviver", "Adventures", LocalDate.now(), author);
+        Book book3 = new Book("Harry Potter", null, null);
+
+        ormManager.saveAll(List.of(author, book1, book2, book3));
+
+        assertEquals(1L, author.getId());
+        assertEquals(List.of(1L, 2L, 3L), List.of(book1.getId(), book2.getId(), book3.getId()));
+        assertEquals(2, selectFrom("BOOK")
+                .where("BOOK.author_id = 1")
+                .stream().count());
+    }
+
+    @Test
+    @DisplayName("Should succeed when saveOrUpdate updates an existing row and inserts a row with an unknown id")
+    void givenPersons_saveOrUpdate_shouldUpdateExistingAndInsertMissing() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Person.class);
+        Person person = new Person("Yan", "Levchenko", LocalDate.now());
+        ormManager.save(person);
+
+        person.setFirstName("Mark");
+        ormManager.saveOrUpdate(person);
+        ormManager.saveOrUpdate(new Person(10L, "Oksana", "Linnyk", LocalDate.now()));
+
+        assertEquals(1, selectFrom("PERSON")
+                .where("PERSON.id = 1")
+                .and("PERSON.firstname = 'Mark'")
+                .stream().count());
+        assertEquals(1, selectFrom("PERSON")
+                .where("PERSON.id = 10")
+                .stream().count());
+    }
+
+    @Test
+    @DisplayName("Should succeed when deleting a missing entity throws an exception")
+    void givenMissingPerson_delete_shouldThrowException() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Person.class);
+        Person person = new Person(5L, "Yan", "Levchenko", LocalDate.now());
+
+        assertThrows(ORMException.class, () -> ormManager.delete(person));
+    }
+
+    @Test
+    @DisplayName("Should succeed when every author gets only its own books and every book gets its author")
+    void givenAuthorsAndBooks_getAll_shouldStitchRelationsToTheRightParents() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author1 = new Author("Yan");
+        Author author2 = new Author("Mark");
+        ormManager.saveAll(List.of(author1, author2));
+        ormManager.saveAll(List.of(
+                new Book("Sumerki", "Love", LocalDate.now(), author1),
+                new Book("Surviver", "Adventures", LocalDate.now(), author2),
+                new Book("Harry Potter", "Fantasy", LocalDate.now(), author1),
+                new Book("Orphan", null, null)
+        ));
+
+        List<Author> authors = ormManager.getAll(Author.class);
+        List<Book> books = ormManager.getAll(Book.class);
+
+        assertEquals(2, authors.get(0).getBooks().size());
+        assertEquals(1, authors.get(1).getBooks().size());
+        assertEquals("Surviver", authors.get(1).getBooks().get(0).getName());
+        assertEquals("Mark", books.get(1).getAuthor().getName());
+        assertNull(books.get(3).getAuthor());
+    }
+
+    @Test
+    @DisplayName("Should succeed when the book is read together with its author")
+    void givenBookWithAuthor_getById_shouldJoinTheAuthor() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        Book book = new Book("Sumerki", "Love", LocalDate.now(), author);
+        ormManager.save(book);
+
+        Book dbBook = ormManager.getById(Book.class, book.getId());
+
+        assertEquals(author.getId(), dbBook.getAuthor().getId());
+        assertEquals("Yan", dbBook.getAuthor().getName());
+    }
+
+    @Test
+    @DisplayName("Should succeed when the lazy book list is loaded only on first access")
+    void givenAuthorWithBooks_getById_shouldLoadBooksOnFirstAccess() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.save(new Book("Sumerki", "Love", LocalDate.now(), author));
+
+        Author dbAuthor = ormManager.getById(Author.class, author.getId());
+        var books = (LazyList<Book>) dbAuthor.getBooks();
+
+        assertFalse(books.isLoaded());
+        assertEquals("Sumerki", books.get(0).getName());
+        assertTrue(books.isLoaded());
+    }
+
+    @Test
+    @DisplayName("Should succeed when a lazy list loaded by an async worker is filled in the session of the accessing thread")
+    void givenAuthorLoadedAsync_accessBooks_shouldLoadThemIntoTheCallingThreadsSession() {
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(2, Duration.ofSeconds(10), Duration.ofMinutes(1)))) {
+            ORMManager ormManager = new ORMManager(pool);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+            Author author = new Author("Yan");
+            ormManager.save(author);
+            Book book = new Book("Sumerki", "Love", LocalDate.now(), author);
+            ormManager.save(book);
+            ormManager.clear();
+
+            Author asyncAuthor;
+            try (var asyncManager = new AsyncORMManager(ormManager)) {
+                asyncAuthor = asyncManager.getByIdAsync(Author.class, author.getId()).join();
+            }
+            var books = (LazyList<Book>) asyncAuthor.getBooks();
+
+            assertFalse(books.isLoaded());
+            assertEquals("Sumerki", books.get(0).getName());
+            assertTrue(books.isLoaded());
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when the same row is loaded as the same instance within one manager")
+    void givenAuthorAndBooks_getAllAndGetById_shouldReuseLoadedInstances() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.saveAll(List.of(
+                new Book("Sumerki", "Love", LocalDate.now(), author),
+                new Book("Surviver", "Adventures", LocalDate.now(), author)
+        ));
+
+        List<Book> books = ormManager.getAll(Book.class);
+        Author dbAuthor = ormManager.getById(Author.class, author.getId());
+
+        assertSame(books.get(0).getAuthor(), books.get(1).getAuthor());
+        assertSame(dbAuthor, books.get(0).getAuthor());
+        assertSame(books.get(0), dbAuthor.getBooks().get(0));
+        assertSame(books.get(1), ormManager.getById(Book.class, books.get(1).getId()));
+
+        ormManager.clear();
+
+        assertNotSame(dbAuthor, ormManager.getById(Author.class, author.getId()));
+    }
+
+    @Test
+    @DisplayName("Should succeed when repeated reads are served by the second-level cache and writes invalidate it")
+    void givenCachedAuthors_getById_shouldHitTheCacheUntilTheAuthorIsMerged() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+        var cache = new SecondLevelCache();
+        cache.configure(Author.class, new CacheConfig(1, Duration.ofMinutes(1)));
+        ormManager.setSecondLevelCache(cache);
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author1 = new Author("Yan");
+        Author author2 = new Author("Mark");
+        ormManager.saveAll(List.of(author1, author2));
+
+        ormManager.getById(Author.class, author1.getId());
+        ormManager.clear();
+        assertEquals("Yan", ormManager.getById(Author.class, author1.getId()).getName());
+
+        ormManager.getById(Author.class, author2.getId());
+        author2.setName("Anton");
+        ormManager.merge(author2);
+        ormManager.clear();
+
+        assertEquals("Anton", ormManager.getById(Author.class, author2.getId()).getName());
+        var statistics = cache.getStatistics(Author.class);
+        assertEquals(1, statistics.getHits());
+        assertEquals(3, statistics.getMisses());
+        assertEquals(1, statistics.getEvictions());
+    }
+
+    @Test
+    @DisplayName("Should succeed when all books are streamed in chunks together with their authors")
+    void givenBooks_stream_shouldReadAllBooksChunkByChunk() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+        ormManager.setFetchSize(2);
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.saveAll(List.of(
+                new Book("Sumerki", "Love", LocalDate.now(), author),
+                new Book("Surviver", "Adventures", LocalDate.now(), author),
+                new Book("Harry Potter", "Fantasy", LocalDate.now(), author)
+        ));
+
+        List<Book> books;
+        try (Stream<Book> stream = ormManager.stream(Book.class)) {
+            books = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(3, books.size());
+        assertEquals("Harry Potter", books.get(2).getName());
+        assertSame(books.get(0).getAuthor(), books.get(1).getAuthor());
+        assertNotSame(books.get(0).getAuthor(), books.get(2).getAuthor());
+        assertEquals("Yan", books.get(2).getAuthor().getName());
+        try (Stream<Book> stream = ormManager.stream(Book.class)) {
+            assertEquals("Sumerki", stream.findFirst().orElseThrow().getName());
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when the persons are read page by page after the last seen id")
+    void givenFivePersons_page_shouldReturnPagesOrderedById() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(House.class);
+        ormManager.prepareRepositoryFor(Person.class);
+        ormManager.saveAll(List.of(
+                new Person("Yan", "Levchenko", LocalDate.now()),
+                new Person("Mark", "Levchenko", LocalDate.now()),
+                new Person("Anton", "Levchenko", LocalDate.now()),
+                new Person("Olga", "Levchenko", LocalDate.now()),
+                new Person("Ivan", "Levchenko", LocalDate.now())
+        ));
+
+        Page<Person> first = ormManager.page(Person.class, null, 2);
+        Page<Person> last = ormManager.page(Person.class, 4L, 2);
+
+        assertEquals(List.of("Yan", "Mark"), first.getItems().stream().map(Person::getFirstName).collect(Collectors.toList()));
+        assertEquals(2L, first.getLastId());
+        assertTrue(first.hasMore());
+        assertEquals("Ivan", last.getItems().get(0).getFirstName());
+        assertFalse(last.hasMore());
+
+        PageCursor<Person> cursor = ormManager.pages(Person.class, 2);
+        var pages = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            pages++;
+        }
+        assertEquals(3, pages);
+        assertEquals(5L, cursor.getLastId());
+    }
+
+    @Test
+    @DisplayName("Should succeed when one manager is shared by many threads without lost updates")
+    void givenSharedManager_concurrentCrud_shouldKeepEveryThreadsChanges() throws Exception {
+        var threads = 16;
+        var iterations = 40;
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(8, Duration.ofSeconds(10), Duration.ofMinutes(1)))) {
+            ORMManager ormManager = new ORMManager(pool);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+
+            var executor = Executors.newFixedThreadPool(threads);
+            var start = new CountDownLatch(1);
+            var futures = new ArrayList<Future<?>>();
+            for (var t = 0; t < threads; t++) {
+                var thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (var i = 0; i < iterations; i++) {
+                        Author author = new Author(thread + "-" + i);
+                        ormManager.save(author);
+                        author.setName(author.getName() + "-merged");
+                        ormManager.merge(author);
+
+                        Author dbAuthor = ormManager.getById(Author.class, author.getId());
+                        assertEquals(thread + "-" + i + "-merged", dbAuthor.getName());
+                        if (i % 2 == 0) {
+                            ormManager.delete(dbAuthor);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            List<Author> authors = ormManager.getAll(Author.class);
+            assertEquals(threads * iterations / 2, authors.size());
+            assertTrue(authors.stream().allMatch(author -> author.getName().endsWith("-merged")));
+            assertEquals(threads * iterations / 2, authors.stream().map(Author::getId).distinct().count());
+
+            Author seen = ormManager.getById(Author.class, authors.get(0).getId());
+            CompletableFuture.runAsync(() -> {
+                Author other = ormManager.getById(Author.class, seen.getId());
+                other.setName("Renamed");
+                ormManager.merge(other);
+            }).join();
+            assertEquals("Renamed", ormManager.getById(Author.class, seen.getId()).getName());
+            assertEquals(0, pool.getActiveConnections());
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when independent reads are fanned out and completed asynchronously")
+    void givenAuthors_getByIdAsync_shouldCompleteAllReads() {
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(2, Duration.ofSeconds(10), Duration.ofMinutes(1)));
+             var asyncManager = new AsyncORMManager(new ORMManager(pool))) {
+            ORMManager ormManager = new ORMManager(pool);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+
+            var saves = new ArrayList<CompletableFuture<Author>>();
+            for (var i = 0; i < 10; i++) {
+                saves.add(asyncManager.saveAsync(new Author("Author " + i)));
+            }
+            var reads = saves.stream()
+                    .map(CompletableFuture::join)
+                    .map(author -> asyncManager.getByIdAsync(Author.class, author.getId()))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).join();
+
+            assertEquals("Author 3", reads.get(3).join().getName());
+            asyncManager.deleteAsync(reads.get(0).join()).join();
+            assertEquals(9, asyncManager.getAllAsync(Author.class).join().size());
+            assertEquals(0, pool.getActiveConnections());
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when merge writes only the changed columns of a loaded person")
+    void givenLoadedPerson_merge_shouldUpdateOnlyChangedColumns() throws SQLException {
+        var connection = dataSource.getConnection();
+        ORMManager ormManager = new ORMManager(connection);
+
+        ormManager.prepareRepositoryFor(House.class);
+        ormManager.prepareRepositoryFor(Person.class);
+        ormManager.save(new Person("Yan", "Levchenko", LocalDate.now()));
+        ormManager.save(new Person("Mark", "Levchenko", LocalDate.now()));
+
+        Person person = ormManager.getById(Person.class, 1L);
+        Person unchanged = ormManager.getById(Person.class, 2L);
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE Person SET lastName = 'Ivanov' WHERE id = 1");
+            statement.executeUpdate("DELETE FROM Person WHERE id = 2");
+        }
+
+        person.setFirstName("Anton");
+        ormManager.merge(person);
+        assertThrows(ORMException.class, () -> ormManager.merge(unchanged));
+
+        assertEquals(1, selectFrom("PERSON")
+                .where("PERSON.firstName = 'Anton'")
+                .and("PERSON.lastName = 'Ivanov'")
+                .stream().count());
+    }
+
+    @Test
+    @DisplayName("Should succeed when queued writes are flushed in foreign key order on commit")
+    void givenUnitOfWork_commit_shouldFlushQueuedWritesInForeignKeyOrder() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        Author existing = new Author("Mark");
+        ormManager.save(existing);
+        Author loaded = ormManager.getById(Author.class, existing.getId());
+
+        Author author = new Author("Yan");
+        Book book = new Book("Sumerki", "Love", LocalDate.now(), author);
+        try (var unitOfWork = ormManager.beginUnitOfWork()) {
+            ormManager.save(book);
+            ormManager.save(new Book("Surviver", "Adventures", LocalDate.now(), author));
+            ormManager.save(author);
+            loaded.setName("Anton");
+            ormManager.merge(loaded);
+            ormManager.merge(loaded);
+
+            assertEquals(4, unitOfWork.size());
+            assertNull(book.getId());
+            assertEquals(0, selectFrom("BOOK").stream().count());
+
+            unitOfWork.commit();
+        }
+
+        assertEquals(author.getId(), ormManager.getById(Book.class, book.getId()).getAuthor().getId());
+        assertEquals(2, selectFrom("BOOK").where("BOOK.author_id = " + author.getId()).stream().count());
+        assertEquals(1, selectFrom("AUTHOR").where("AUTHOR.name = 'Anton'").stream().count());
+        assertThrows(ORMException.class, () -> ormManager.save(new Book("Orphan", null, null, new Author(99L, "Nobody"))));
+    }
+
+    @Test
+    @DisplayName("Should succeed when a pending insert referenced by a queued insert cannot be cancelled by a delete")
+    void givenQueuedBookOfPendingAuthor_deleteAuthor_shouldThrowUntilTheBookIsCancelled() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        Author author = new Author("Yan");
+        Book book = new Book("Sumerki", "Love", LocalDate.now(), author);
+        try (var unitOfWork = ormManager.beginUnitOfWork()) {
+            ormManager.save(author);
+            ormManager.save(book);
+
+            assertThrows(IllegalStateException.class, () -> ormManager.delete(author));
+            assertEquals(2, unitOfWork.size());
+
+            ormManager.delete(book);
+            ormManager.delete(author);
+            assertEquals(0, unitOfWork.size());
+            unitOfWork.commit();
+        }
+
+        assertEquals(0, selectFrom("AUTHOR").stream().count());
+        assertEquals(0, selectFrom("BOOK").stream().count());
+    }
+
+    @Test
+    @DisplayName("Should succeed when a failed transaction leaves no rows and a committed one keeps all of them")
+    void givenTransactions_inTransaction_shouldRollBackOnExceptionAndCommitOtherwise() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        assertThrows(ORMException.class, () -> ormManager.inTransaction(orm -> {
+            Author author = new Author("Yan");
+            orm.save(author);
+            orm.saveAll(List.of(new Book("Sumerki", "Love", LocalDate.now(), author)));
+            orm.merge(new Author(99L, "Nobody"));
+        }));
+        assertFalse(ormManager.isTransactionActive());
+        assertEquals(0, selectFrom("AUTHOR").stream().count());
+        assertEquals(0, selectFrom("BOOK").stream().count());
+
+        ormManager.inTransaction(Connection.TRANSACTION_SERIALIZABLE, orm -> {
+            Author author = new Author("Mark");
+            orm.save(author);
+            orm.saveAll(List.of(
+                    new Book("Surviver", "Adventures", LocalDate.now(), author),
+                    new Book("Harry Potter", "Fantasy", LocalDate.now(), author)
+            ));
+        });
+        assertEquals(1, selectFrom("AUTHOR").stream().count());
+        assertEquals(2, selectFrom("BOOK").stream().count());
+    }
+
+    @Test
+    @DisplayName("Should succeed when rows read in a rolled back transaction never reach the second-level cache")
+    void givenCachedAuthor_mergeReadAndRollback_shouldKeepTheCommittedAuthorCached() {
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(2, Duration.ofSeconds(10), Duration.ofMinutes(1)))) {
+            ORMManager ormManager = new ORMManager(pool);
+            var cache = new SecondLevelCache();
+            cache.configure(Author.class, new CacheConfig(10, Duration.ofMinutes(1)));
+            ormManager.setSecondLevelCache(cache);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+            Author author = new Author("Yan");
+            ormManager.save(author);
+
+            ormManager.beginTransaction();
+            Author loaded = ormManager.getById(Author.class, author.getId());
+            loaded.setName("Anton");
+            ormManager.merge(loaded);
+            ormManager.clear();
+            assertEquals("Anton", ormManager.getById(Author.class, author.getId()).getName());
+            assertEquals("Anton", ormManager.getAll(Author.class).get(0).getName());
+            ormManager.rollback();
+
+            var name = CompletableFuture.supplyAsync(
+                    () -> ormManager.getById(Author.class, author.getId()).getName()).join();
+            assertEquals("Yan", name);
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when books are filtered, ordered and limited by the database")
+    void givenBooks_find_shouldReturnMatchingBooksInOrder() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.saveAll(List.of(
+                new Book("Sumerki", "Love", LocalDate.of(2005, 10, 5), author),
+                new Book("Surviver", "Adventures", LocalDate.of(1999, 1, 1), author),
+                new Book("Harry Potter", "Fantasy", LocalDate.of(1997, 6, 26), author),
+                new Book("Silmarillion", "Fantasy", LocalDate.of(1977, 9, 15), null)
+        ));
+
+        List<Book> books = ormManager.find(Criteria.of(Book.class)
+                .in("genre", List.of("Love", "Fantasy", "Adventures"))
+                .between("dateOfWriting", LocalDate.of(1990, 1, 1), LocalDate.of(2010, 1, 1))
+                .orderByDescending("dateOfWriting")
+                .limit(2));
+        List<Book> byAuthor = ormManager.find(Criteria.of(Book.class)
+                .eq("author", author)
+                .like("name", "S%")
+                .orderBy("name"));
+
+        assertEquals(List.of("Sumerki", "Surviver"), books.stream().map(Book::getName).collect(Collectors.toList()));
+        assertEquals(List.of("Sumerki", "Surviver"), byAuthor.stream().map(Book::getName).collect(Collectors.toList()));
+        assertEquals("Silmarillion", ormManager.find(Criteria.of(Book.class).eq("author", null)).get(0).getName());
+        assertThrows(IllegalArgumentException.class, () -> Criteria.of(Book.class).eq("title", "Sumerki"));
+        var nullBound = assertThrows(IllegalArgumentException.class,
+                () -> Criteria.of(Book.class).between("dateOfWriting", LocalDate.of(1990, 1, 1), null));
+        assertTrue(nullBound.getMessage().contains("dateOfWriting"));
+        assertThrows(IllegalArgumentException.class, () -> Criteria.of(Book.class).like("name", null));
+        var mismatch = assertThrows(IllegalArgumentException.class,
+                () -> Criteria.of(Book.class).gt("dateOfWriting", "1990-01-01"));
+        assertTrue(mismatch.getMessage().contains("dateOfWriting"));
+        assertThrows(IllegalArgumentException.class, () -> Criteria.of(Book.class).eq("author", "Yan"));
+        assertThrows(IllegalArgumentException.class, () -> Criteria.of(Book.class).in("genre", List.of("Love", 1)));
+    }
+
+    @Test
+    @DisplayName("Should succeed when book names and author names are projected without loading entities")
+    void givenBooks_project_shouldMapSelectedColumnsToConstructor() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.saveAll(List.of(
+                new Book("Sumerki", "Love", LocalDate.of(2005, 10, 5), author),
+                new Book("Silmarillion", "Fantasy", LocalDate.of(1977, 9, 15), null)
+        ));
+
+        List<BookTitle> titles = ormManager.project(
+                Projection.of(Book.class, BookTitle.class).column("name").column("author.name"),
+                Criteria.of(Book.class).orderBy("name")
+        );
+
+        assertEquals(2, titles.size());
+        assertEquals("Silmarillion", titles.get(0).name);
+        assertNull(titles.get(0).authorName);
+        assertEquals("Sumerki", titles.get(1).name);
+        assertEquals("Yan", titles.get(1).authorName);
+        assertEquals(2, ormManager.project(Projection.of(Book.class, BookTitle.class).column("genre").column("name")).size());
+        assertThrows(ORMException.class,
+                () -> ormManager.project(Projection.of(Book.class, BookTitle.class).column("dateOfWriting")));
+    }
+
+    @Test
+    @DisplayName("Should succeed when declared indexes and indexes on join columns are created with the tables")
+    void givenIndexedEntities_prepareRepositoryFor_shouldCreateIndexes() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        ormManager.prepareRepositoryFor(Person.class);
+
+        var bookIndexes = indexedColumns("BOOK");
+        assertEquals(List.of("NAME"), bookIndexes.get("BOOK_NAME_IDX"));
+        assertEquals(List.of("GENRE", "DATEOFWRITING"), bookIndexes.get("BOOK_GENRE_DATEOFWRITING_IDX"));
+        assertFalse(bookIndexes.containsKey("BOOK_AUTHOR_ID_IDX"));
+        assertTrue(bookIndexes.containsValue(List.of("AUTHOR_ID")));
+        assertEquals(List.of("HOUSE_ID"), indexedColumns("PERSON").get("PERSON_HOUSE_ID_IDX"));
+    }
+
+    @Test
+    @DisplayName("Should succeed when existing tables are validated and updated without losing rows")
+    void givenExistingTables_prepareRepositoryForInUpdateMode_shouldKeepRowsAndAddMissingColumns() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        Author author = new Author("Yan");
+        ormManager.save(author);
+        ormManager.save(new Book("Sumerki", "Love", LocalDate.of(2005, 10, 5), author));
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.execute("DROP INDEX Book_genre_dateOfWriting_idx");
+            statement.execute("ALTER TABLE Book DROP COLUMN genre");
+        }
+
+        ormManager.setSchemaMode(SchemaMode.VALIDATE);
+        ormManager.prepareRepositoryFor(Author.class);
+        assertThrows(ORMException.class, () -> ormManager.prepareRepositoryFor(Book.class));
+
+        ormManager.setSchemaMode(SchemaMode.UPDATE);
+        ormManager.prepareRepositoryFor(Author.class);
+        ormManager.prepareRepositoryFor(Book.class);
+        ormManager.setSchemaMode(SchemaMode.VALIDATE);
+        ormManager.prepareRepositoryFor(Book.class);
+
+        assertEquals(1, selectFrom("AUTHOR").stream().count());
+        assertEquals(1, selectFrom("BOOK").stream().count());
+        ormManager.clear();
+        Book book = ormManager.getById(Book.class, 1L);
+        assertEquals("Sumerki", book.getName());
+        assertNull(book.getGenre());
+        assertEquals("Yan", book.getAuthor().getName());
+        assertTrue(indexedColumns("BOOK").containsKey("BOOK_GENRE_DATEOFWRITING_IDX"));
+    }
+
+    private Map<String, List<String>> indexedColumns(String table) throws SQLException {
+        var indexes = new HashMap<String, List<String>>();
+        try (var connection = dataSource.getConnection();
+             var indexInfo = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+            while (indexInfo.next()) {
+                indexes.computeIfAbsent(indexInfo.getString("INDEX_NAME"), name -> new ArrayList<>())
+                        .add(indexInfo.getString("COLUMN_NAME"));
+            }
+        }
+        return indexes;
+    }
+
+    @Test
+    @DisplayName("Should succeed when classes without @Entity are rejected before their fields are reflected on")
+    void givenJdkClass_prepareRepositoryForAndSave_shouldThrowException() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        assertThrows(IllegalArgumentException.class, () -> ormManager.prepareRepositoryFor(String.class));
+        assertThrows(ORMException.class, () -> ormManager.save("Yan"));
+        assertThrows(ORMException.class, () -> ormManager.saveAll(List.of("Yan")));
+    }
+
+    @Test
+    @DisplayName("Should succeed when relations with an unsupported fetch type are rejected")
+    void givenUnsupportedFetchTypes_prepareRepositoryFor_shouldThrowException() throws SQLException {
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        var lazy = assertThrows(ORMException.class, () -> ormManager.prepareRepositoryFor(LazyOwnedBook.class));
+        var joined = assertThrows(ORMException.class, () -> ormManager.prepareRepositoryFor(JoinedAuthor.class));
+        assertTrue(lazy.getMessage().startsWith("FetchType.LAZY is not supported"));
+        assertTrue(joined.getMessage().startsWith("FetchType.JOIN is not supported"));
+    }
+
+    private static final class BookTitle {
+        private final String name;
+        private final String authorName;
+
+        private BookTitle(String name, String authorName) {
+            this.name = name;
+            this.authorName = authorName;
+        }
+    }
+
+    @Entity
+    private static final class LazyOwnedBook {
+        @Id
+        private Long id;
+
+        @ManyToOne(value = "author_id", fetch = FetchType.LAZY)
+        private Author author;
+    }
+
+    @Entity
+    private static final class JoinedAuthor {
+        @Id
+        private Long id;
+
+        @OneToMany(mappedBy = "author_id", fetch = FetchType.JOIN)
+        private List<Book> books;
+    }
+}
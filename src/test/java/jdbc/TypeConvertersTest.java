@@ -0,0 +1,94 @@
+package jdbc;
+
+import annotations.Column;
+import annotations.Entity;
+import annotations.Id;
+import client.ORMManager;
+import exceptions.ORMException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import orm.testsupport.BaseIntegrationTest;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TypeConvertersTest extends BaseIntegrationTest {
+
+    @AfterEach
+    void unregisterConverters() {
+        TypeConverters.unregister(Duration.class);
+    }
+
+    @Test
+    @DisplayName("Should succeed when a registered converter stores and reads a custom column type")
+    void givenRegisteredConverter_saveAndGetById_shouldConvertTheColumn() throws SQLException {
+        TypeConverters.register(Duration.class, new TypeConverter<>() {
+            @Override
+            public String getSqlType() {
+                return "BIGINT";
+            }
+
+            @Override
+            public Duration read(ResultSet resultSet, int index) throws SQLException {
+                var millis = resultSet.getLong(index);
+                return resultSet.wasNull() ? null : Duration.ofMillis(millis);
+            }
+
+            @Override
+            public void bind(PreparedStatement statement, int index, Duration value) throws SQLException {
+                if (value == null) {
+                    statement.setNull(index, Types.BIGINT);
+                } else {
+                    statement.setLong(index, value.toMillis());
+                }
+            }
+        });
+        ORMManager ormManager = new ORMManager(dataSource.getConnection());
+
+        assertThrows(ORMException.class, () -> ormManager.prepareRepositoryFor(Device.class));
+        ormManager.prepareRepositoryFor(Timer.class);
+        Timer timer = new Timer();
+        timer.delay = Duration.ofSeconds(90);
+        timer.repeats = 3;
+        ormManager.save(timer);
+        ormManager.save(new Timer());
+        ormManager.clear();
+
+        Timer loaded = ormManager.getById(Timer.class, timer.id);
+        Timer empty = ormManager.getById(Timer.class, timer.id + 1);
+        assertEquals(Duration.ofSeconds(90), loaded.delay);
+        assertEquals(3, loaded.repeats);
+        assertNull(empty.delay);
+        assertEquals(0, empty.repeats);
+    }
+
+    @Entity
+    static class Timer {
+        @Id
+        Long id;
+
+        @Column
+        Duration delay;
+
+        @Column
+        int repeats;
+    }
+
+    @Entity
+    static class Device {
+        @Id
+        Long id;
+
+        @Column
+        UUID serial;
+    }
+}
@@ -0,0 +1,70 @@
+package pool;
+
+import client.ORMManager;
+import client.entities.Author;
+import client.entities.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import orm.testsupport.BaseIntegrationTest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest extends BaseIntegrationTest {
+
+    @Test
+    @DisplayName("Should succeed when a returned connection is reused and the pool never exceeds its size")
+    void givenPoolOfOne_getConnection_shouldReuseTheConnectionAndTimeOut() throws SQLException {
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(1, Duration.ofMillis(50), Duration.ofMinutes(1)))) {
+            var first = pool.getConnection();
+            Connection physical = first.unwrap(Connection.class);
+            var statementCache = first.getStatementCache();
+
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+
+            first.close();
+            assertTrue(first.isClosed());
+            assertThrows(SQLException.class, first::createStatement);
+
+            try (var second = pool.getConnection()) {
+                assertSame(physical, second.unwrap(Connection.class));
+                assertSame(statementCache, second.getStatementCache());
+                assertEquals(1, pool.getActiveConnections());
+            }
+            assertEquals(1, pool.getTotalConnections());
+            assertEquals(1, pool.getIdleConnections());
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when every operation of the manager borrows and returns a pooled connection")
+    void givenPool_ormManager_shouldReturnConnectionsAfterEveryOperation() {
+        try (var pool = new ConnectionPool(dataSource, new PoolConfig(2, Duration.ofSeconds(1), Duration.ofMinutes(1)))) {
+            var ormManager = new ORMManager(pool);
+
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+            Author author = new Author("Yan");
+            ormManager.save(author);
+            ormManager.saveAll(List.of(
+                    new Book("Sumerki", "Love", LocalDate.now(), author),
+                    new Book("Surviver", "Adventures", LocalDate.now(), author)
+            ));
+
+            Author dbAuthor = ormManager.getById(Author.class, author.getId());
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(2, dbAuthor.getBooks().size());
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(1, pool.getTotalConnections());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package processor;
+
+import client.ORMManager;
+import metadata.EntityMetadataRegistry;
+import metadata.mapper.EntityMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import orm.testsupport.BaseIntegrationTest;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityMapperProcessorTest extends BaseIntegrationTest {
+    private static final String GADGET = String.join("\n",
+            "package gadgets;",
+            "",
+            "import annotations.Column;",
+            "import annotations.Entity;",
+            "import annotations.Id;",
+            "",
+            "@Entity",
+            "public class Gadget {",
+            "    @Id",
+            "    Long id;",
+            "    @Column",
+            "    String name;",
+            "    @Column",
+            "    int weight;",
+            "    @Column",
+            "    java.time.LocalDate released;",
+            "    @Column",
+            "    private boolean active;",
+            "",
+            "    public boolean isActive() {",
+            "        return active;",
+            "    }",
+            "",
+            "    public void setActive(boolean active) {",
+            "        this.active = active;",
+            "    }",
+            "}");
+    private static final String SEALED_GADGET = String.join("\n",
+            "package gadgets;",
+            "",
+            "import annotations.Column;",
+            "import annotations.Entity;",
+            "import annotations.Id;",
+            "",
+            "@Entity",
+            "public class SealedGadget {",
+            "    @Id",
+            "    private Long id;",
+            "    @Column",
+            "    private String name;",
+            "}");
+
+    @TempDir
+    Path output;
+
+    @Test
+    @DisplayName("Should succeed when a generated mapper is loaded and used to save and read the entity")
+    void givenEntitySources_compileWithProcessor_shouldGenerateWorkingMappers() throws Exception {
+        var sources = output.resolve("src/gadgets");
+        Files.createDirectories(sources);
+        Files.writeString(sources.resolve("Gadget.java"), GADGET);
+        Files.writeString(sources.resolve("SealedGadget.java"), SEALED_GADGET);
+        var diagnostics = compile(sources.resolve("Gadget.java"), sources.resolve("SealedGadget.java"));
+
+        assertTrue(diagnostics.getDiagnostics().stream()
+                .anyMatch(d -> d.getMessage(Locale.ROOT).contains("SealedGadget is mapped by reflection")));
+        assertEquals("gadgets.Gadget_Mapper", Files.readString(
+                output.resolve("classes/META-INF/services/" + EntityMapper.class.getName())).trim());
+
+        try (var classLoader = new URLClassLoader(
+                new URL[]{output.resolve("classes").toUri().toURL()}, getClass().getClassLoader())) {
+            var gadgetClass = classLoader.loadClass("gadgets.Gadget");
+            var metadata = EntityMetadataRegistry.forClass(gadgetClass);
+            assertNotNull(metadata.getMapper());
+            assertNull(EntityMetadataRegistry.forClass(classLoader.loadClass("gadgets.SealedGadget")).getMapper());
+
+            var ormManager = new ORMManager(dataSource.getConnection());
+            ormManager.prepareRepositoryFor(gadgetClass);
+            var gadget = metadata.newInstance();
+            metadata.getProperty("name").set(gadget, "Phone");
+            metadata.getProperty("weight").set(gadget, 180);
+            metadata.getProperty("released").set(gadget, LocalDate.of(2020, 1, 1));
+            metadata.getProperty("active").set(gadget, true);
+            ormManager.save(gadget);
+            ormManager.clear();
+
+            var loaded = ormManager.getById(gadgetClass, metadata.getId(gadget));
+            assertEquals("Phone", metadata.getProperty("name").get(loaded));
+            assertEquals(180, metadata.getProperty("weight").get(loaded));
+            assertEquals(LocalDate.of(2020, 1, 1), metadata.getProperty("released").get(loaded));
+            assertEquals(true, metadata.getProperty("active").get(loaded));
+        }
+    }
+
+    private DiagnosticCollector<JavaFileObject> compile(Path... sources) throws IOException, URISyntaxException {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        var classpath = Path.of(EntityMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (var fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, null)) {
+            var options = List.of(
+                    "-classpath", classpath.toString(),
+                    "-d", Files.createDirectories(output.resolve("classes")).toString(),
+                    "-s", Files.createDirectories(output.resolve("generated")).toString()
+            );
+            var task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(sources));
+            task.setProcessors(List.of(new EntityMapperProcessor()));
+            assertTrue(task.call(), diagnostics.getDiagnostics().toString());
+        }
+        return diagnostics;
+    }
+}
@@ -0,0 +1,136 @@
+package writebehind;
+
+import client.ORMManager;
+import client.entities.Author;
+import client.entities.Book;
+import exceptions.ORMException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import orm.testsupport.BaseIntegrationTest;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindBufferTest extends BaseIntegrationTest {
+
+    @Test
+    @DisplayName("Should succeed when entities saved by many producers are all written in batches")
+    void givenProducers_save_shouldWriteAllEntitiesInBatches() throws Exception {
+        try (var pool = new ConnectionPool(dataSource, PoolConfig.defaults())) {
+            ORMManager ormManager = new ORMManager(pool);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+
+            var config = new WriteBehindConfig(64, 16, Duration.ofMillis(20), Duration.ofSeconds(10));
+            var buffer = new WriteBehindBuffer(ormManager, config);
+            var executor = Executors.newFixedThreadPool(4);
+            var futures = new ArrayList<Future<?>>();
+            for (var producer = 0; producer < 4; producer++) {
+                futures.add(executor.submit(() -> {
+                    for (var i = 0; i < 250; i++) {
+                        buffer.save(new Author("Author " + i));
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+            Author last = new Author("Last");
+            buffer.save(last);
+            buffer.flush();
+
+            assertNotNull(last.getId());
+            assertEquals(1001, selectFrom("AUTHOR").stream().count());
+            var statistics = buffer.getStatistics();
+            assertEquals(1001, statistics.getWritten());
+            assertEquals(0, statistics.getQueueDepth());
+            assertTrue(statistics.getFlushes() < 1001);
+
+            buffer.close();
+            assertFalse(buffer.trySave(new Author("Late")));
+            assertThrows(ORMException.class, () -> buffer.save(new Author("Late")));
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when a batch failing with an Error is reported by flush and later batches are still written")
+    void givenFailingBatch_flush_shouldThrowAndKeepWriting() {
+        try (var pool = new ConnectionPool(dataSource, PoolConfig.defaults())) {
+            ORMManager ormManager = new ORMManager(pool) {
+                @Override
+                public <T> void saveAll(Collection<T> entities) {
+                    if (entities.stream().anyMatch(entity -> "Broken".equals(((Author) entity).getName()))) {
+                        throw new AssertionError("Broken batch");
+                    }
+                    super.saveAll(entities);
+                }
+            };
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+
+            var config = new WriteBehindConfig(16, 1, Duration.ofMillis(20), Duration.ofSeconds(10));
+            try (var buffer = new WriteBehindBuffer(ormManager, config)) {
+                buffer.save(new Author("Yan"));
+                buffer.save(new Author("Broken"));
+                buffer.save(new Author("Mark"));
+
+                var exception = assertThrows(ORMException.class, buffer::flush);
+                assertInstanceOf(AssertionError.class, exception.getCause());
+                assertEquals(1, buffer.getStatistics().getFailed());
+                assertEquals(2, buffer.getStatistics().getWritten());
+
+                buffer.save(new Author("Anton"));
+                buffer.flush();
+                assertEquals(3, selectFrom("AUTHOR").stream().count());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should succeed when every entity accepted while the buffer is closing is written")
+    void givenProducersRacingWithClose_trySave_shouldWriteEveryAcceptedEntity() throws Exception {
+        try (var pool = new ConnectionPool(dataSource, PoolConfig.defaults())) {
+            ORMManager ormManager = new ORMManager(pool);
+            ormManager.prepareRepositoryFor(Author.class);
+            ormManager.prepareRepositoryFor(Book.class);
+
+            var config = new WriteBehindConfig(1024, 32, Duration.ofMillis(5), Duration.ofSeconds(10));
+            var buffer = new WriteBehindBuffer(ormManager, config);
+            var accepted = new AtomicLong();
+            var executor = Executors.newFixedThreadPool(4);
+            var futures = new ArrayList<Future<?>>();
+            for (var producer = 0; producer < 4; producer++) {
+                futures.add(executor.submit(() -> {
+                    while (buffer.trySave(new Author("Author"))) {
+                        accepted.incrementAndGet();
+                    }
+                }));
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+            buffer.close();
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            assertTrue(accepted.get() > 0);
+            assertEquals(accepted.get(), selectFrom("AUTHOR").stream().count());
+            assertEquals(accepted.get(), buffer.getStatistics().getWritten());
+        }
+    }
+}